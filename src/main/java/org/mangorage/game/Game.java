@@ -11,6 +11,7 @@ import org.mangorage.game.core.KeybindRegistry;
 import org.mangorage.game.renderer.BlockOutlineRenderer;
 import org.mangorage.game.renderer.HudCubeRenderer;
 import org.mangorage.game.renderer.TextRenderer;
+import org.mangorage.game.renderer.chunk.ChunkRenderer;
 import org.mangorage.game.util.Cooldown;
 import org.mangorage.game.util.supplier.InitializableSupplier;
 import org.mangorage.game.world.BlockAction;
@@ -73,7 +74,7 @@ public final class Game {
         glfwDestroyWindow(window);
         glfwTerminate();
 
-        world.saveAll();
+        world.close();
     }
 
     private void init() {
@@ -135,6 +136,7 @@ public final class Game {
         while (!glfwWindowShouldClose(window)) {
             if (worldGarbageCollector.consume()) {
                 world.clearUnusedChunks(cameraPos);
+                world.saveModified();
             }
 
             float currentFrame = (float) glfwGetTime();
@@ -185,8 +187,15 @@ public final class Game {
         glLoadIdentity();
 
         float fps = deltaTime > 0 ? 1.0f / deltaTime : 0;
+        final var arena = ChunkRenderer.get().getVertexArena();
         StringBuilder sb = new StringBuilder()
                 .append(String.format("FPS: %.0f\n", fps))
+                .append(String.format("Chunk Draw Calls: %d\n", ChunkRenderer.get().getDrawCalls()))
+                .append(String.format("Chunk Vertices: %d drawn, %d facing away\n", ChunkRenderer.get().getVerticesDrawn(), ChunkRenderer.get().getVerticesSkipped()))
+                .append(String.format("Chunk Meshes Building: %d\n", ChunkRenderer.get().getPendingMeshes()))
+                .append(String.format("Chunk Vertex Arena: %d / %d KB, %d meshes, %d gaps, %.0f%% fragmented\n",
+                        arena.getUsedBytes() / 1024, arena.getCapacityBytes() / 1024, arena.getAllocationCount(),
+                        arena.getFreeBlockCount(), arena.getFragmentation() * 100))
                 .append(String.format("Pos: (%.2f, %.2f, %.2f)\n", cameraPos.x, cameraPos.y, cameraPos.z))
                 .append(String.format("Yaw/Pitch: (%.2f, %.2f)\n", yaw, pitch))
                 .append(String.format("Selected Block: %s\n", BuiltInRegistries.BLOCK_REGISTRY.getAll().get(selectedBlock).getName()));
@@ -197,6 +206,20 @@ public final class Game {
                     .append(String.format("Looking at Face: %s\n", selectedFace));
         }
 
+        final var culling = world.getCulling();
+        final var frustum = culling.getFrustum();
+        sb.append(String.format("Chunks: %d drawn, %d culled | Sections: %d drawn, %d culled\n",
+                frustum.getChunksDrawn(), frustum.getChunksCulled(), frustum.getSectionsDrawn(), frustum.getSectionsCulled()));
+        final var occlusion = culling.getOcclusion();
+        sb.append(String.format("Occlusion: %d sections reached, %d meshes occluded\n",
+                occlusion.getSectionsReached(), occlusion.getSectionsOccluded()));
+        sb.append(String.format("Depth Occlusion: %d occluders, %d chunks and %d sections hidden\n",
+                culling.getDepthBuffer().getBoxesDrawn(), culling.getChunksHidden(), culling.getSectionsHidden()));
+
+        final var evictedChunks = world.getEvictedChunks();
+        sb.append(String.format("Evicted Chunk Cache: %d chunks, %d KB, %d hits / %d misses\n",
+                evictedChunks.size(), evictedChunks.getSizeBytes() / 1024, evictedChunks.getHits(), evictedChunks.getMisses()));
+
         String direction = getFacingDirection(yaw);
         sb.append(String.format("Facing: %s\n", direction));
 
@@ -282,9 +305,7 @@ public final class Game {
             int blockY = (int) Math.floor(currentPos.y);
             int blockZ = (int) Math.floor(currentPos.z);
 
-            BlockPos pos = new BlockPos(blockX, blockY, blockZ);
-
-            if (!world.getBlock(pos).isAir()) {
+            if (!world.getBlock(blockX, blockY, blockZ).isAir()) {
                 float dx = currentPos.x - blockX - 0.5f;
                 float dy = currentPos.y - blockY - 0.5f;
                 float dz = currentPos.z - blockZ - 0.5f;
@@ -303,7 +324,7 @@ public final class Game {
                     face = dz > 0 ? Direction.SOUTH : Direction.NORTH;
                 }
 
-                return new BlockHitResult(pos, face);
+                return new BlockHitResult(new BlockPos(blockX, blockY, blockZ), face);
             }
         }
         return null;
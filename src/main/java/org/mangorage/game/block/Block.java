@@ -98,6 +98,13 @@ public class Block {
         return false;
     }
 
+    /**
+     * Full unit cubes drawn by the default renderer, the chunk mesher may merge their faces with their neighbours.
+     */
+    public boolean isFullCube() {
+        return !isAir() && getShape() == DEFAULT_SHAPE && getRenderer() == simpleBlockRenderer;
+    }
+
     public float[][][] getShape() {
         return DEFAULT_SHAPE;
     }
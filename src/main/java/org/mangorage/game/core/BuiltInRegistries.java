@@ -21,5 +21,7 @@ public final class BuiltInRegistries {
     public static final Block SLAB_BLOCK = BLOCK_REGISTRY.register("dirt_slab_block", new SlabBlock());
     public static final Block STAIR_BLOCK = BLOCK_REGISTRY.register("diamond_stair_block", new StairBlock());
 
-    public static void init() {}
+    public static void init() {
+        BLOCK_REGISTRY.freeze();
+    }
 }
@@ -2,6 +2,7 @@ package org.mangorage.game.core.registry;
 
 import org.mangorage.game.block.Block;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,7 +13,8 @@ public final class DefaultedRegistry<T> implements Registry<T> {
     private final Map<String, T> entries = new HashMap<>();
     private final Map<T, String> entries_reverse = new HashMap<>();
     private final Map<String, Integer> entries_byId = new HashMap<>();
-    private final Map<Integer, T> entries_byId_reverse = new HashMap<>();
+    private final Map<T, Integer> entries_reverse_byId = new HashMap<>();
+    private volatile Object[] entries_byId_reverse = new Object[16]; // Indexed by internal id, so lookups never box
 
     private volatile boolean frozen = false;
 
@@ -25,6 +27,11 @@ public final class DefaultedRegistry<T> implements Registry<T> {
         frozen = true;
     }
 
+    @Override
+    public boolean isFrozen() {
+        return frozen;
+    }
+
     void check() {
         if (frozen)
             throw new IllegalStateException("Cant register to a frozen registry...");
@@ -35,7 +42,10 @@ public final class DefaultedRegistry<T> implements Registry<T> {
         check();
         final int internalId = entries_byId.size() + 1;
         entries_byId.put(id, internalId);
-        entries_byId_reverse.put(internalId, object);
+        entries_reverse_byId.put(object, internalId);
+        if (internalId >= entries_byId_reverse.length)
+            entries_byId_reverse = Arrays.copyOf(entries_byId_reverse, entries_byId_reverse.length * 2);
+        entries_byId_reverse[internalId] = object;
         entries_reverse.put(object, id);
         entries.put(id, object);
         return object;
@@ -62,7 +72,8 @@ public final class DefaultedRegistry<T> implements Registry<T> {
 
     @Override
     public int getInternalId(T value) {
-        return getInternalId(getId(value));
+        final Integer internalId = entries_reverse_byId.get(value);
+        return internalId != null ? internalId : getDefaultInternalId();
     }
 
     @Override
@@ -71,8 +82,11 @@ public final class DefaultedRegistry<T> implements Registry<T> {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public T getByInternalId(int internalId) {
-        return entries_byId_reverse.get(internalId);
+        final Object[] byId = entries_byId_reverse;
+        if (internalId < 0 || internalId >= byId.length) return null;
+        return (T) byId[internalId];
     }
 
     @Override
@@ -6,6 +6,8 @@ import java.util.List;
 
 public sealed interface Registry<T> permits DefaultedRegistry {
     void freeze();
+    boolean isFrozen();
+
     T register(String id, T object);
 
     T get(String id);
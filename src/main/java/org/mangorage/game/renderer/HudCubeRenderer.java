@@ -7,6 +7,7 @@ import org.mangorage.game.core.BuiltInRegistries;
 import org.mangorage.game.renderer.chunk.ChunkMesh;
 
 import org.mangorage.game.renderer.chunk.ChunkRenderer;
+import org.mangorage.game.world.chunk.PalettedContainer;
 
 import java.nio.IntBuffer;
 
@@ -29,14 +30,13 @@ public final class HudCubeRenderer {
     }
 
     public void setActiveBlock(Block block) {
-        int[][][] blocks = new int[16][16][16];
-        blocks[0][0][0] = BuiltInRegistries.BLOCK_REGISTRY.getInternalId(block);
+        PalettedContainer blocks = new PalettedContainer(1, 1, 1, BuiltInRegistries.BLOCK_REGISTRY.getInternalId(block));
         final var oldMesh = this.chunkMesh;
         this.chunkMesh = null;
         if (oldMesh != null) {
             oldMesh.dispose();
         }
-        this.chunkMesh = ChunkRenderer.get().buildMesh(null, null, blocks);
+        this.chunkMesh = ChunkRenderer.get().buildMesh(blocks, 0, null);
     }
 
     public void render(float size) {
@@ -3,42 +3,119 @@ package org.mangorage.game.renderer.block;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.EXTTextureFilterAnisotropic;
 import org.lwjgl.opengl.GL;
+import org.mangorage.game.renderer.chunk.VertexBuilder;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.opengl.GL30.glGenerateMipmap;
+import static org.lwjgl.opengl.GL12.*;
+import static org.lwjgl.opengl.GL30.*;
 import static org.lwjgl.stb.STBImage.*;
-import static org.lwjgl.stb.STBImage.stbi_image_free;
 
+/**
+ * Packs every block texture into the layers of one {@code GL_TEXTURE_2D_ARRAY}.
+ * <p>
+ * Textures are handed out as layer indices while block models are baked and kept in memory until
+ * {@link #uploadTextureArray()} creates the array. Layer {@link #MISSING_TEXTURE} is reserved for the missing
+ * texture, which stands in for anything that fails to load. All textures need the size of the missing texture.
+ */
 public final class AssetLoader {
-    private final Map<String, Integer> cache = new HashMap<>();
+    public static final int MISSING_TEXTURE = 0;
+    public static final int MAX_LAYERS = VertexBuilder.MAX_LAYERS; // Bits left over in a packed vertex
+
+    private static final String MISSING_TEXTURE_PATH = "assets/textures/misc/missing.png";
+
+    private final Map<String, Integer> layers = new HashMap<>();
+    private final List<ByteBuffer> images = new ArrayList<>(); // Pixels per layer until uploaded
+    private final int width, height;
+    private int textureArray = 0;
+
+    public AssetLoader() {
+        IntBuffer size = BufferUtils.createIntBuffer(2);
+        images.add(loadImage(MISSING_TEXTURE_PATH, size));
+        width = size.get(0);
+        height = size.get(1);
+        layers.put(MISSING_TEXTURE_PATH, MISSING_TEXTURE);
+    }
 
+    /**
+     * @return the texture array layer holding this texture, loading it on first use
+     */
+    public int getOrCreateLayer(String resourceName) {
+        return layers.computeIfAbsent(resourceName, name -> {
+            if (textureArray != 0)
+                throw new IllegalStateException("Texture array was already uploaded, can't add " + name);
+            if (images.size() >= MAX_LAYERS)
+                throw new IllegalStateException("Out of texture array layers, can't add " + name);
 
-    public int getOrCreateTexture(String resourceName) {
-        return cache.computeIfAbsent(resourceName, name -> {
             try {
-                return loadTextureFromResource(name);
+                IntBuffer size = BufferUtils.createIntBuffer(2);
+                ByteBuffer image = loadImage(name, size);
+                if (size.get(0) != width || size.get(1) != height) {
+                    stbi_image_free(image);
+                    throw new RuntimeException("Texture " + name + " is " + size.get(0) + "x" + size.get(1) + ", expected " + width + "x" + height);
+                }
+                images.add(image);
+                return images.size() - 1;
             } catch (Throwable e) {
-                return loadTextureFromResource("assets/textures/misc/missing.png");
+                System.err.println("Failed to load texture " + name + ", using the missing texture");
+                e.printStackTrace();
+                return MISSING_TEXTURE;
             }
         });
     }
 
-    public void dispose() {
-        for (int textureId : cache.values()) glDeleteTextures(textureId);
-        cache.clear();
+    /**
+     * Creates the texture array from every texture handed out so far. Only done once, later calls return the same array.
+     */
+    public int uploadTextureArray() {
+        if (textureArray != 0) return textureArray;
+
+        textureArray = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D_ARRAY, textureArray);
+
+        glTexImage3D(GL_TEXTURE_2D_ARRAY, 0, GL_RGBA8, width, height, images.size(), 0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        for (int layer = 0; layer < images.size(); layer++) {
+            glTexSubImage3D(GL_TEXTURE_2D_ARRAY, 0, 0, 0, layer, width, height, 1, GL_RGBA, GL_UNSIGNED_BYTE, images.get(layer));
+            stbi_image_free(images.get(layer));
+        }
+        images.clear();
+        glGenerateMipmap(GL_TEXTURE_2D_ARRAY); // Mip levels are built per layer
+
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_S, GL_REPEAT);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_WRAP_T, GL_REPEAT);
+
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MIN_FILTER, GL_NEAREST_MIPMAP_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D_ARRAY, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+
+        if (GL.getCapabilities().GL_EXT_texture_filter_anisotropic) {
+            float maxAniso = glGetFloat(EXTTextureFilterAnisotropic.GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT);
+            glTexParameterf(GL_TEXTURE_2D_ARRAY, EXTTextureFilterAnisotropic.GL_TEXTURE_MAX_ANISOTROPY_EXT, maxAniso);
+        }
+
+        glBindTexture(GL_TEXTURE_2D_ARRAY, 0);
+        return textureArray;
     }
 
-    private int loadTextureFromResource(String resourceName) {
-        int textureId = glGenTextures();
-        glBindTexture(GL_TEXTURE_2D, textureId);
+    public void dispose() {
+        if (textureArray != 0) glDeleteTextures(textureArray);
+        textureArray = 0;
+        for (ByteBuffer image : images) stbi_image_free(image);
+        images.clear();
+        layers.clear();
+    }
 
+    /**
+     * Decodes a texture to RGBA, stores its width and height in {@code size}. Free the result with {@link org.lwjgl.stb.STBImage#stbi_image_free}.
+     */
+    private ByteBuffer loadImage(String resourceName, IntBuffer size) {
         try (InputStream in = getClass().getClassLoader().getResourceAsStream(resourceName)) {
             if (in == null) throw new RuntimeException("Texture resource not found: " + resourceName);
             byte[] imageBytes = in.readAllBytes();
@@ -53,25 +130,10 @@ public final class AssetLoader {
             ByteBuffer image = stbi_load_from_memory(imageBuffer, width, height, channels, 4);
             if (image == null) throw new RuntimeException("Failed to load texture: " + stbi_failure_reason());
 
-            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width.get(0), height.get(0), 0, GL_RGBA, GL_UNSIGNED_BYTE, image);
-            glGenerateMipmap(GL_TEXTURE_2D);
-
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT);
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT);
-
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST_MIPMAP_LINEAR);
-            glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
-
-            if (GL.getCapabilities().GL_EXT_texture_filter_anisotropic) {
-                float maxAniso = glGetFloat(EXTTextureFilterAnisotropic.GL_MAX_TEXTURE_MAX_ANISOTROPY_EXT);
-                glTexParameterf(GL_TEXTURE_2D, EXTTextureFilterAnisotropic.GL_TEXTURE_MAX_ANISOTROPY_EXT, maxAniso);
-            }
-
-            stbi_image_free(image);
+            size.put(0, width.get(0)).put(1, height.get(0));
+            return image;
         } catch (IOException e) {
             throw new RuntimeException("Failed to load texture resource: " + resourceName, e);
         }
-
-        return textureId;
     }
 }
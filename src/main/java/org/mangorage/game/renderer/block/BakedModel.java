@@ -0,0 +1,29 @@
+package org.mangorage.game.renderer.block;
+
+import org.mangorage.game.block.Block;
+
+/**
+ * A block's faces as baked by its {@link BlockRenderer}. What a face index means is up to the renderer,
+ * the full block renderers use {@link org.mangorage.game.core.Direction#ordinal()}.
+ */
+public final class BakedModel {
+    private final Block block;
+    private final BakedQuad[] quads;
+
+    public BakedModel(Block block, BakedQuad[] quads) {
+        this.block = block;
+        this.quads = quads;
+    }
+
+    public Block getBlock() {
+        return block;
+    }
+
+    public BakedQuad getQuad(int face) {
+        return quads[face];
+    }
+
+    public int getQuadCount() {
+        return quads.length;
+    }
+}
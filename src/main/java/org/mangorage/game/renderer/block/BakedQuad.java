@@ -0,0 +1,195 @@
+package org.mangorage.game.renderer.block;
+
+import org.mangorage.game.core.Direction;
+import org.mangorage.game.renderer.chunk.ChunkMeshBuilder;
+import org.mangorage.game.renderer.chunk.VertexBuilder;
+
+import java.util.Arrays;
+
+/**
+ * One face of a block with its geometry, UVs and materials resolved ahead of time.
+ * Emitting it only copies floats into the mesh.
+ * <p>
+ * The face is stored as quads of 4 vertices, drawn through the shared quad index buffer of
+ * {@link org.mangorage.game.renderer.chunk.ChunkRenderer}. It is baked from triangle pairs as block shapes
+ * store them, see {@link #toQuads(float[])}.
+ */
+public final class BakedQuad {
+    private final float[] vertices; // x, y, z, u, v per vertex, block local, 4 vertices per quad
+    private final int vertexCount;
+    private final Direction face; // Where every quad points, going by its winding, or null if they differ
+    private final Material material;
+    private final int layer; // Texture array layer
+    private final int color; // Face shade and tint, packed by VertexBuilder#packColor
+    private final Overlay overlay; // Drawn again over the same geometry, or null
+    private final Stretch stretch;
+
+    /**
+     * A second texture drawn over the same geometry, like the grass on the sides of grass blocks.
+     *
+     * @param layer texture array layer
+     * @param color shade and tint, packed by VertexBuilder#packColor
+     */
+    public record Overlay(Material material, int layer, int color) {}
+
+    /**
+     * Face plane axes and the UV change per block along them, used to stretch full faces over several blocks.
+     *
+     * @param axisA vertex component width runs along
+     * @param axisB vertex component height runs along
+     * @param u0 UV at the corner where both axes are 0
+     * @param uA UV change per block along axis A
+     * @param uB UV change per block along axis B
+     */
+    public record Stretch(int axisA, int axisB, float u0, float v0, float uA, float vA, float uB, float vB) {
+        /**
+         * Only valid for faces that never get stretched.
+         */
+        public static final Stretch NONE = new Stretch(0, 1, 0, 0, 0, 0, 0, 0);
+
+        /**
+         * Reads the UV steps off a unit face. UVs are affine over it, so extrapolating them past 1 tiles the
+         * texture with GL_REPEAT.
+         *
+         * @param face the corners of the face as x, y, z, spanning 0 to 1 along both axes
+         * @param texCoords u, v of each corner
+         */
+        public static Stretch of(int axisA, int axisB, float[][] face, float[] texCoords) {
+            int origin = 0, stepA = 0, stepB = 0;
+            for (int i = 0; i < face.length; i++) {
+                boolean a = face[i][axisA] != 0;
+                boolean b = face[i][axisB] != 0;
+                if (!a && !b) origin = i;
+                else if (a && !b) stepA = i;
+                else if (!a && b) stepB = i;
+            }
+
+            final float u0 = texCoords[origin * 2], v0 = texCoords[origin * 2 + 1];
+            return new Stretch(axisA, axisB, u0, v0,
+                    texCoords[stepA * 2] - u0, texCoords[stepA * 2 + 1] - v0,
+                    texCoords[stepB * 2] - u0, texCoords[stepB * 2 + 1] - v0);
+        }
+    }
+
+    public BakedQuad(float[] triangles, Material material, int layer, int color) {
+        this(triangles, material, layer, color, null, Stretch.NONE);
+    }
+
+    public BakedQuad(float[] triangles, Material material, int layer, int color, Overlay overlay, Stretch stretch) {
+        this.vertices = toQuads(triangles);
+        this.vertexCount = vertices.length / 5;
+        this.face = faceOf(vertices);
+        this.material = material;
+        this.layer = layer;
+        this.color = color;
+        this.overlay = overlay;
+        this.stretch = stretch;
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+    public Material getOverlay() {
+        return overlay == null ? null : overlay.material();
+    }
+
+    public Direction getFace() {
+        return face;
+    }
+
+    public void emit(ChunkMeshBuilder mesh, int x, int y, int z) {
+        emit(mesh.getBuffer(material, face), layer, color, x, y, z);
+        if (overlay != null) emit(mesh.getBuffer(overlay.material(), face), overlay.layer(), overlay.color(), x, y, z);
+    }
+
+    /**
+     * Emits the quad stretched over {@code width} x {@code height} blocks along its plane axes,
+     * UVs keep going past 1 so the texture repeats once per block.
+     */
+    public void emitStretched(ChunkMeshBuilder mesh, int x, int y, int z, int width, int height) {
+        emitStretched(mesh.getBuffer(material, face), layer, color, x, y, z, width, height);
+        if (overlay != null) emitStretched(mesh.getBuffer(overlay.material(), face), overlay.layer(), overlay.color(), x, y, z, width, height);
+    }
+
+    private void emit(VertexBuilder buffer, int layer, int color, int x, int y, int z) {
+        for (int i = 0, o = 0; i < vertexCount; i++, o += 5) {
+            buffer.vertex(vertices[o] + x, vertices[o + 1] + y, vertices[o + 2] + z, vertices[o + 3], vertices[o + 4], color, layer);
+        }
+    }
+
+    private void emitStretched(VertexBuilder buffer, int layer, int color, int x, int y, int z, int width, int height) {
+        final int axisA = stretch.axisA(), axisB = stretch.axisB();
+        final float uA = stretch.uA(), vA = stretch.vA(), uB = stretch.uB(), vB = stretch.vB();
+        // Packed UVs are unsigned, shift the whole quad by whole textures so it never goes below 0
+        final float u0 = stretch.u0() + (float) Math.ceil(-Math.min(0, uA * width) - Math.min(0, uB * height));
+        final float v0 = stretch.v0() + (float) Math.ceil(-Math.min(0, vA * width) - Math.min(0, vB * height));
+        for (int i = 0, o = 0; i < vertexCount; i++, o += 5) {
+            float a = vertices[o + axisA] * width;
+            float b = vertices[o + axisB] * height;
+            float px = axisA == 0 ? a : vertices[o];
+            float py = axisB == 1 ? b : vertices[o + 1];
+            float pz = axisA == 2 ? a : axisB == 2 ? b : vertices[o + 2];
+            buffer.vertex(px + x, py + y, pz + z, u0 + a * uA + b * uB, v0 + a * vA + b * vB, color, layer);
+        }
+    }
+
+    /**
+     * Turns pairs of triangles sharing an edge (6 vertices of x, y, z, u, v) into quads of 4 vertices,
+     * ordered so that corners 0, 1, 2 and 0, 2, 3 give back the same two triangles with the same winding.
+     */
+    static float[] toQuads(float[] triangles) {
+        if (triangles.length % 30 != 0)
+            throw new IllegalArgumentException("Expected pairs of triangles, got " + triangles.length / 5 + " vertices");
+
+        float[] quads = new float[triangles.length / 6 * 4];
+        for (int pair = 0; pair < triangles.length / 30; pair++) {
+            final int first = pair * 6;
+            int[] loop = null;
+            for (int i = 0; i < 3 && loop == null; i++) {
+                // Look for the edge a -> b of the first triangle in the second one, the quad then runs a, other, b, c
+                final int a = first + i, b = first + (i + 1) % 3, c = first + (i + 2) % 3;
+                int shared = 0, other = -1;
+                for (int k = first + 3; k < first + 6; k++) {
+                    if (isSameVertex(triangles, k, a) || isSameVertex(triangles, k, b)) shared++;
+                    else other = k;
+                }
+                if (shared == 2 && other != -1) loop = new int[] {a, other, b, c};
+            }
+            if (loop == null)
+                throw new IllegalArgumentException("Triangles " + first + " and " + (first + 3) + " do not share an edge");
+
+            for (int corner = 0; corner < 4; corner++) {
+                System.arraycopy(triangles, loop[corner] * 5, quads, (pair * 4 + corner) * 5, 5);
+            }
+        }
+        return quads;
+    }
+
+    /**
+     * @return the direction the front of every quad points in, front faces being counter clockwise like GL culls them
+     */
+    private static Direction faceOf(float[] quads) {
+        Direction face = null;
+        for (int quad = 0; quad < quads.length / 20; quad++) {
+            final int o = quad * 20;
+            final float ax = quads[o + 5] - quads[o], ay = quads[o + 6] - quads[o + 1], az = quads[o + 7] - quads[o + 2];
+            final float bx = quads[o + 10] - quads[o], by = quads[o + 11] - quads[o + 1], bz = quads[o + 12] - quads[o + 2];
+            final float nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+
+            // Axis aligned faces have exactly equal coordinates along their normal, so the other components are exactly 0
+            final Direction quadFace;
+            if (ny == 0 && nz == 0 && nx != 0) quadFace = nx > 0 ? Direction.EAST : Direction.WEST;
+            else if (nx == 0 && nz == 0 && ny != 0) quadFace = ny > 0 ? Direction.UP : Direction.DOWN;
+            else if (nx == 0 && ny == 0 && nz != 0) quadFace = nz > 0 ? Direction.SOUTH : Direction.NORTH;
+            else return null;
+            if (face != null && face != quadFace) return null;
+            face = quadFace;
+        }
+        return face;
+    }
+
+    private static boolean isSameVertex(float[] vertices, int a, int b) {
+        return Arrays.equals(vertices, a * 5, a * 5 + 5, vertices, b * 5, b * 5 + 5);
+    }
+}
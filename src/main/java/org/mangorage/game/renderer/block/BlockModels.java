@@ -0,0 +1,162 @@
+package org.mangorage.game.renderer.block;
+
+import org.mangorage.game.block.Block;
+import org.mangorage.game.core.BuiltInRegistries;
+import org.mangorage.game.renderer.chunk.VertexBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Baked models for every registered block, indexed by internal id.
+ * <p>
+ * Built once after the block registry is frozen: textures are resolved to texture array layers, tints and UVs are computed
+ * and materials are interned, so meshing only copies arrays. The per-id flags the mesher checks for every
+ * cell live here too, so it never has to go through the registry.
+ */
+public final class BlockModels {
+    private final AssetLoader assetLoader;
+    private final List<Material> materials = new ArrayList<>();
+    private final List<Material> materialsView = Collections.unmodifiableList(materials);
+
+    // Palettes the chunk shader colours vertices from, a byte per channel packed like 0xRRGGBB
+    private final List<Integer> shades = new ArrayList<>();
+    private final List<Integer> tints = new ArrayList<>();
+
+    private final BakedModel[] models;
+    private final boolean[] rendered;
+    private final boolean[] fullCube;
+    private final boolean[] hidesFaces;
+
+    public static BlockModels bake(AssetLoader assetLoader) {
+        if (!BuiltInRegistries.BLOCK_REGISTRY.isFrozen())
+            throw new IllegalStateException("Block models can only be baked once the block registry is frozen");
+        return new BlockModels(assetLoader);
+    }
+
+    private BlockModels(AssetLoader assetLoader) {
+        this.assetLoader = assetLoader;
+
+        final int count = BuiltInRegistries.BLOCK_REGISTRY.getAll().size() + 1; // Internal ids start at 1
+        this.models = new BakedModel[count];
+        this.rendered = new boolean[count];
+        this.fullCube = new boolean[count];
+        this.hidesFaces = new boolean[count];
+
+        for (int id = 1; id < count; id++) {
+            Block block = BuiltInRegistries.BLOCK_REGISTRY.getByInternalId(id);
+            if (block == null) continue;
+
+            rendered[id] = !block.isAir();
+            fullCube[id] = block.isFullCube();
+            hidesFaces[id] = block.isSolid() && !block.isAir();
+            if (rendered[id]) models[id] = block.getRenderer().bake(block, this);
+        }
+    }
+
+    /**
+     * @return the texture array layer of this texture
+     */
+    public int getTexture(String resourceName) {
+        return assetLoader.getOrCreateLayer(resourceName);
+    }
+
+    /**
+     * Returns the shared material for this combination, creating it on first use. Only meant for baking.
+     */
+    public Material getMaterial(Consumer<Boolean> extra, boolean overlay) {
+        for (Material material : materials) {
+            if (material.extra() == extra && material.overlay() == overlay)
+                return material;
+        }
+        Material material = new Material(materials.size(), extra, overlay);
+        materials.add(material);
+        return material;
+    }
+
+    /**
+     * Splits a shaded tint into a face shade and a tint at full brightness and interns both. Only meant for baking.
+     *
+     * @param rgb tint with the face shading applied, null for none
+     * @return the colour packed by {@link VertexBuilder#packColor}
+     */
+    public int getColor(float[] rgb) {
+        if (rgb == null) rgb = new float[] {1f, 1f, 1f};
+        final float shade = Math.max(rgb[0], Math.max(rgb[1], rgb[2]));
+        final int tint = shade == 0 ? 0xFFFFFF
+                : toByte(rgb[0] / shade) << 16 | toByte(rgb[1] / shade) << 8 | toByte(rgb[2] / shade);
+        return VertexBuilder.packColor(
+                intern(shades, toByte(shade), VertexBuilder.MAX_SHADES, "shades"),
+                intern(tints, tint, VertexBuilder.MAX_TINTS, "tints")
+        );
+    }
+
+    /**
+     * @return every face shade handed out by {@link #getColor}, by index
+     */
+    public float[] getShades() {
+        float[] values = new float[shades.size()];
+        for (int i = 0; i < values.length; i++) values[i] = shades.get(i) / 255f;
+        return values;
+    }
+
+    /**
+     * @return every tint handed out by {@link #getColor}, as RGB triples by index
+     */
+    public float[] getTints() {
+        float[] values = new float[tints.size() * 3];
+        for (int i = 0; i < tints.size(); i++) {
+            values[i * 3] = (tints.get(i) >> 16 & 0xFF) / 255f;
+            values[i * 3 + 1] = (tints.get(i) >> 8 & 0xFF) / 255f;
+            values[i * 3 + 2] = (tints.get(i) & 0xFF) / 255f;
+        }
+        return values;
+    }
+
+    private static int intern(List<Integer> palette, int value, int max, String name) {
+        int index = palette.indexOf(value);
+        if (index != -1) return index;
+        if (palette.size() == max) throw new IllegalStateException("Out of " + name + ", a vertex has room for " + max);
+        palette.add(value);
+        return palette.size() - 1;
+    }
+
+    private static int toByte(float channel) {
+        return Math.round(Math.max(0f, Math.min(1f, channel)) * 255f);
+    }
+
+    /**
+     * All materials, ordered by id.
+     */
+    public List<Material> getMaterials() {
+        return materialsView;
+    }
+
+    public BakedModel get(int internalId) {
+        return models[internalId];
+    }
+
+    public boolean isRendered(int internalId) {
+        return rendered[internalId];
+    }
+
+    public boolean isFullCube(int internalId) {
+        return fullCube[internalId];
+    }
+
+    /**
+     * @return true if a block with this id hides the faces of blocks next to it
+     */
+    public boolean hidesFaces(int internalId) {
+        return internalId < hidesFaces.length && hidesFaces[internalId];
+    }
+
+    /**
+     * @return true if a block with this id fills its whole cell and can't be seen through
+     */
+    public boolean isOpaque(int internalId) {
+        return internalId < fullCube.length && fullCube[internalId] && hidesFaces[internalId];
+    }
+}
@@ -2,11 +2,15 @@ package org.mangorage.game.renderer.block;
 
 import org.mangorage.game.block.Block;
 import org.mangorage.game.core.Direction;
-import org.mangorage.game.renderer.chunk.DrawCommand;
+import org.mangorage.game.renderer.chunk.ChunkMeshBuilder;
 
 import java.util.EnumMap;
-import java.util.List;
 
 public abstract class BlockRenderer {
-    abstract public void render(List<DrawCommand> drawCommands, List<Float> vertices, Block block, int x, int y, int z, EnumMap<Direction, Block> neighbors, AssetLoader assetLoader);
+    /**
+     * Resolves everything rendering the block needs into a {@link BakedModel}. Runs once per block after the registry is frozen.
+     */
+    abstract public BakedModel bake(Block block, BlockModels models);
+
+    abstract public void render(ChunkMeshBuilder mesh, BakedModel model, int x, int y, int z, EnumMap<Direction, Block> neighbors);
 }
@@ -0,0 +1,14 @@
+package org.mangorage.game.renderer.block;
+
+import java.util.function.Consumer;
+
+/**
+ * Everything a draw command needs besides its vertex range. Interned by {@link BlockModels},
+ * so two faces share a material exactly when they can share a draw call. Tints and texture layers are per vertex
+ * and don't split materials.
+ *
+ * @param id      dense index, assigned in baking order
+ * @param overlay drawn on top of other faces with the same geometry, so it has to come after every non overlay material
+ */
+public record Material(int id, Consumer<Boolean> extra, boolean overlay) {
+}
@@ -3,77 +3,91 @@ package org.mangorage.game.renderer.block;
 import org.mangorage.game.block.Block;
 import org.mangorage.game.core.BuiltInRegistries;
 import org.mangorage.game.core.Direction;
-import org.mangorage.game.renderer.chunk.DrawCommand;
+import org.mangorage.game.renderer.chunk.ChunkMeshBuilder;
 
 import java.util.EnumMap;
-import java.util.List;
+import java.util.function.Consumer;
 
 import static org.lwjgl.opengl.GL11.*;
 import static org.mangorage.game.util.RenderUtil.rotateUVs;
 
 public final class SimpleBlockRenderer extends BlockRenderer {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Consumer<Boolean> GRASS_OVERLAY = state -> {
+        if (state) {
+            glEnable(GL_BLEND);
+            glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+            glEnable(GL_POLYGON_OFFSET_FILL);
+            glPolygonOffset(-0.02f, 0f);
+            glDepthMask(false);
+        } else {
+            glPolygonOffset(0f, 0f);
+            glDepthMask(true);
+            glDisable(GL_POLYGON_OFFSET_FILL);
+            glDisable(GL_BLEND);
+        }
+    };
 
     @Override
-    public void render(List<DrawCommand> drawCommands, List<Float> vertices, Block block, int x, int y, int z, EnumMap<Direction, Block> neighbors, AssetLoader assetLoader) {
-        for (Direction dir : Direction.values()) {
-            Block neighborBlock = neighbors.get(dir);
-            boolean shouldRenderFace = neighborBlock == null || !neighborBlock.isSolid() || neighborBlock.isAir();
+    public BakedModel bake(Block block, BlockModels models) {
+        BakedQuad[] quads = new BakedQuad[DIRECTIONS.length];
+        for (Direction dir : DIRECTIONS) {
+            float[][] face = block.getShape()[dir.ordinal()];
+            float[] texCoords = new float[] { 0,0, 1,0, 1,1, 0,0, 1,1, 0,1 };
 
-            if (shouldRenderFace) {
-                int vertexStart = vertices.size() / 5;
-                addFaceVertices(vertices, x, y, z, block, dir); // Assuming rendering at origin
+            if (dir == Direction.EAST || dir == Direction.NORTH) {
+                texCoords = rotateUVs(texCoords, 270);
+            }
 
-                int addedVerts = (vertices.size() / 5) - vertexStart;
-                if (addedVerts > 0) {
-                    if (block != BuiltInRegistries.GRASS_BLOCK) {
-                        int texId = assetLoader.getOrCreateTexture(block.getBlockInfo().getTexture(dir));
-                        float[] tint = block.getTint(dir, 1);
-                        drawCommands.add(new DrawCommand(texId, vertexStart, addedVerts, tint, state -> {}));
-                    } else {
-                        // Grass block special sauce
-                        float[] tint = block.getTint(dir, 1);
-                        int texId = assetLoader.getOrCreateTexture(block.getBlockInfo().getTexture(dir));
-                        drawCommands.add(new DrawCommand(texId, vertexStart, addedVerts, tint, state -> {}));
+            float[] vertices = new float[face.length * 5];
+            for (int i = 0; i < face.length; i++) {
+                vertices[i * 5] = face[i][0];
+                vertices[i * 5 + 1] = face[i][1];
+                vertices[i * 5 + 2] = face[i][2];
+                vertices[i * 5 + 3] = texCoords[i * 2];
+                vertices[i * 5 + 4] = texCoords[i * 2 + 1];
+            }
 
-                        // Overlay for side grass
-                        if (dir != Direction.UP && dir != Direction.DOWN) {
-                            int texOverlay = assetLoader.getOrCreateTexture("assets/textures/blocks/grass_block_side_overlay.png");
-                            float[] overlayTint = block.getTint(dir, 2);
-                            drawCommands.add(new DrawCommand(texOverlay, vertexStart, addedVerts, overlayTint, state -> {
-                                if (state) {
-                                    glEnable(GL_BLEND);
-                                    glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
-                                    glEnable(GL_POLYGON_OFFSET_FILL);
-                                    glPolygonOffset(-0.02f, 0f);
-                                    glDepthMask(false);
-                                } else {
-                                    glPolygonOffset(0f, 0f);
-                                    glDepthMask(true);
-                                    glDisable(GL_POLYGON_OFFSET_FILL);
-                                    glDisable(GL_BLEND);
-                                }
-                            }));
-                        }
-                    }
-                }
+            Material material = models.getMaterial(null, false);
+            int layer = models.getTexture(block.getBlockInfo().getTexture(dir));
+            int color = models.getColor(block.getTint(dir, 1));
+            BakedQuad.Overlay overlay = null;
+            if (block == BuiltInRegistries.GRASS_BLOCK && dir != Direction.UP && dir != Direction.DOWN) {
+                // Overlay for side grass
+                overlay = new BakedQuad.Overlay(
+                        models.getMaterial(GRASS_OVERLAY, true),
+                        models.getTexture("assets/textures/blocks/grass_block_side_overlay.png"),
+                        models.getColor(block.getTint(dir, 2))
+                );
             }
+
+            // The face plane axes, stretched faces scale the unit face along them
+            final int axisA = dir.x != 0 ? 2 : 0;
+            final int axisB = dir.y != 0 ? 2 : 1;
+
+            quads[dir.ordinal()] = new BakedQuad(vertices, material, layer, color, overlay, BakedQuad.Stretch.of(axisA, axisB, face, texCoords));
         }
+        return new BakedModel(block, quads);
     }
 
-    private void addFaceVertices(List<Float> vertices, int x, int y, int z, Block blockInstance, Direction dir) {
-        float[][] face = blockInstance.getShape()[dir.ordinal()];
-        float[] texCoords = new float[] { 0,0, 1,0, 1,1, 0,0, 1,1, 0,1 };
+    @Override
+    public void render(ChunkMeshBuilder mesh, BakedModel model, int x, int y, int z, EnumMap<Direction, Block> neighbors) {
+        for (Direction dir : DIRECTIONS) {
+            Block neighborBlock = neighbors.get(dir);
+            boolean shouldRenderFace = neighborBlock == null || !neighborBlock.isSolid() || neighborBlock.isAir();
 
-        if (dir == Direction.EAST || dir == Direction.NORTH) {
-            texCoords = rotateUVs(texCoords, 270);
+            if (shouldRenderFace) {
+                model.getQuad(dir.ordinal()).emit(mesh, x, y, z);
+            }
         }
+    }
 
-        for (int i = 0; i < face.length; i++) {
-            vertices.add(face[i][0] + x);
-            vertices.add(face[i][1] + y);
-            vertices.add(face[i][2] + z);
-            vertices.add(texCoords[i * 2]);
-            vertices.add(texCoords[i * 2 + 1]);
-        }
+    /**
+     * Emits one face stretched over {@code width} x {@code height} blocks of the face plane.
+     * Width runs along X for up/down/north/south faces and along Z for east/west faces, height along the other axis.
+     * The texture repeats once per block.
+     */
+    public void renderFace(ChunkMeshBuilder mesh, BakedModel model, Direction dir, int x, int y, int z, int width, int height) {
+        model.getQuad(dir.ordinal()).emitStretched(mesh, x, y, z, width, height);
     }
 }
@@ -2,10 +2,9 @@ package org.mangorage.game.renderer.block;
 
 import org.mangorage.game.block.Block;
 import org.mangorage.game.core.Direction;
-import org.mangorage.game.renderer.chunk.DrawCommand;
+import org.mangorage.game.renderer.chunk.ChunkMeshBuilder;
 
 import java.util.EnumMap;
-import java.util.List;
 
 public final class StairBlockRenderer extends BlockRenderer {
 
@@ -56,31 +55,38 @@ public final class StairBlockRenderer extends BlockRenderer {
     private static final int[] VERT_COUNTS = {6, 12, 6, 6, 12, 12, 6};
 
     @Override
-    public void render(List<DrawCommand> drawCommands, List<Float> vertices, Block block, int x, int y, int z, EnumMap<Direction, Block> neighbors, AssetLoader assetLoader) {
+    public BakedModel bake(Block block, BlockModels models) {
+        int layer = models.getTexture("assets/textures/blocks/stone_block.png");
+        Material material = models.getMaterial(null, false);
+        BakedQuad[] quads = new BakedQuad[STAIR_SHAPE.length];
         for (int faceIndex = 0; faceIndex < STAIR_SHAPE.length; faceIndex++) {
-            if (!shouldRenderFace(faceIndex, neighbors)) continue;
-
-            int vertexStart = vertices.size() / 5;
             float[][] face = STAIR_SHAPE[faceIndex];
             float[] texCoords = generateUV(face, getTextureDirection(faceIndex));
 
+            float[] vertices = new float[face.length * 5];
             for (int i = 0; i < face.length; i++) {
-                vertices.add(face[i][0] + x);
-                vertices.add(face[i][1] + y);
-                vertices.add(face[i][2] + z);
-                vertices.add(texCoords[i * 2]);
-                vertices.add(texCoords[i * 2 + 1]);
+                vertices[i * 5] = face[i][0];
+                vertices[i * 5 + 1] = face[i][1];
+                vertices[i * 5 + 2] = face[i][2];
+                vertices[i * 5 + 3] = texCoords[i * 2];
+                vertices[i * 5 + 4] = texCoords[i * 2 + 1];
             }
 
-            int addedVerts = (vertices.size() / 5) - vertexStart;
-            if (addedVerts > 0) {
-                int texId = assetLoader.getOrCreateTexture("assets/textures/blocks/stone_block.png");
-                float[] tint = block.getTint(getTextureDirection(faceIndex), 1);
-                // Brighten the RGB components
-                tint[0] = Math.min(1.0f, tint[0] * 1.5f); // Red
-                tint[1] = Math.min(1.0f, tint[1] * 1.5f); // Green
-                tint[2] = Math.min(1.0f, tint[2] * 1.5f); // Blue
-                drawCommands.add(new DrawCommand(texId, vertexStart, addedVerts, tint, s -> {}));
+            float[] tint = block.getTint(getTextureDirection(faceIndex), 1);
+            // Brighten the RGB components
+            tint[0] = Math.min(1.0f, tint[0] * 1.5f); // Red
+            tint[1] = Math.min(1.0f, tint[1] * 1.5f); // Green
+            tint[2] = Math.min(1.0f, tint[2] * 1.5f); // Blue
+            quads[faceIndex] = new BakedQuad(vertices, material, layer, models.getColor(tint));
+        }
+        return new BakedModel(block, quads);
+    }
+
+    @Override
+    public void render(ChunkMeshBuilder mesh, BakedModel model, int x, int y, int z, EnumMap<Direction, Block> neighbors) {
+        for (int faceIndex = 0; faceIndex < model.getQuadCount(); faceIndex++) {
+            if (shouldRenderFace(faceIndex, neighbors)) {
+                model.getQuad(faceIndex).emit(mesh, x, y, z);
             }
         }
     }
@@ -0,0 +1,114 @@
+package org.mangorage.game.renderer.chunk;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Hands out ranges of a fixed size space, keeping the gaps in a free list. Allocations take the smallest gap they
+ * fit in, freed ranges merge with the gaps next to them. Only does the bookkeeping, units are up to the caller.
+ */
+public final class ArenaAllocator {
+    private final TreeMap<Integer, Integer> freeByOffset = new TreeMap<>(); // Offset to size
+    private final TreeSet<Long> freeBySize = new TreeSet<>(); // Size << 32 | offset, for finding the best fit
+    private final Map<Integer, Integer> allocations = new HashMap<>(); // Offset to size
+
+    private int capacity = 0;
+    private int used = 0;
+
+    public ArenaAllocator(int capacity) {
+        grow(capacity);
+    }
+
+    /**
+     * @return the offset of the range, or -1 if no gap is large enough
+     */
+    public int allocate(int size) {
+        if (size <= 0) throw new IllegalArgumentException("Size must be positive, got " + size);
+
+        final Long fit = freeBySize.ceiling((long) size << 32);
+        if (fit == null) return -1;
+
+        final int offset = (int) (long) fit;
+        final int blockSize = (int) (fit >>> 32);
+        removeFree(offset, blockSize);
+        if (blockSize > size) addFree(offset + size, blockSize - size);
+
+        allocations.put(offset, size);
+        used += size;
+        return offset;
+    }
+
+    public void free(int offset) {
+        final Integer size = allocations.remove(offset);
+        if (size == null) throw new IllegalStateException("Nothing allocated at " + offset);
+        used -= size;
+        release(offset, size);
+    }
+
+    /**
+     * Extends the space, the new part joins the gap at the end if there is one.
+     */
+    public void grow(int newCapacity) {
+        if (newCapacity < capacity) throw new IllegalArgumentException("Can't shrink from " + capacity + " to " + newCapacity);
+        if (newCapacity == capacity) return;
+        final int oldCapacity = capacity;
+        capacity = newCapacity;
+        release(oldCapacity, newCapacity - oldCapacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getUsed() {
+        return used;
+    }
+
+    public int getAllocationCount() {
+        return allocations.size();
+    }
+
+    public int getFreeBlockCount() {
+        return freeByOffset.size();
+    }
+
+    public int getLargestFreeBlock() {
+        return freeBySize.isEmpty() ? 0 : (int) (freeBySize.last() >>> 32);
+    }
+
+    /**
+     * @return how much of the free space is outside the largest gap, 0 when it is all in one piece
+     */
+    public float getFragmentation() {
+        final int free = capacity - used;
+        return free == 0 ? 0 : 1 - (float) getLargestFreeBlock() / free;
+    }
+
+    private void release(int offset, int size) {
+        int start = offset, end = offset + size;
+
+        final Map.Entry<Integer, Integer> before = freeByOffset.lowerEntry(start);
+        if (before != null && before.getKey() + before.getValue() == start) {
+            removeFree(before.getKey(), before.getValue());
+            start = before.getKey();
+        }
+        final Integer after = freeByOffset.get(end);
+        if (after != null) {
+            removeFree(end, after);
+            end += after;
+        }
+        addFree(start, end - start);
+    }
+
+    private void addFree(int offset, int size) {
+        freeByOffset.put(offset, size);
+        freeBySize.add((long) size << 32 | offset);
+    }
+
+    private void removeFree(int offset, int size) {
+        freeByOffset.remove(offset);
+        freeBySize.remove((long) size << 32 | offset);
+    }
+}
@@ -0,0 +1,197 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.mangorage.game.world.World;
+import org.mangorage.game.world.chunk.Chunk;
+import org.mangorage.game.world.chunk.ChunkSection;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Everything that decides whether a chunk or section gets drawn this frame, cheapest test first:
+ * the {@link SectionOcclusionCuller} walk, the {@link ChunkFrustum} and then the {@link OcclusionDepthBuffer}.
+ * <p>
+ * The depth buffer is filled with the heightmap hull of every loaded chunk in render distance, see
+ * {@link Chunk#getOccluderHeights}, so hills hide what is behind them.
+ */
+public final class ChunkCulling {
+    private final ChunkFrustum frustum = new ChunkFrustum();
+    private final SectionOcclusionCuller occlusion = new SectionOcclusionCuller();
+    private final OcclusionDepthBuffer depthBuffer = new OcclusionDepthBuffer();
+
+    private int[] heights = new int[0]; // Occluder heights of every cell in render distance
+    private boolean[] merged = new boolean[0]; // Scratch for drawHull
+    private int chunksHidden, sectionsHidden;
+
+    /**
+     * @param opaque internal ids that fully block the view, used to build the occluders
+     */
+    public void update(World world, Vector3f cameraPos, Matrix4f view, Matrix4f projection, int renderDistance, IntPredicate opaque) {
+        frustum.update(projection, view);
+        occlusion.update(world, cameraPos, renderDistance);
+        chunksHidden = sectionsHidden = 0;
+
+        final int cameraChunkX = Math.floorDiv((int) Math.floor(cameraPos.x), 16);
+        final int cameraChunkZ = Math.floorDiv((int) Math.floor(cameraPos.z), 16);
+        final int cells = 16 / Chunk.OCCLUDER_CELL;
+
+        depthBuffer.begin(projection, view, cameraPos);
+        final int span = renderDistance * 2 + 1;
+        final int cellSpan = span * cells + 2; // Plus a ring of empty cells around the edge
+        if (heights.length != cellSpan * cellSpan) {
+            heights = new int[cellSpan * cellSpan];
+            merged = new boolean[cellSpan * cellSpan];
+        }
+        Arrays.fill(heights, 0);
+        for (int dx = 0; dx < span; dx++) {
+            for (int dz = 0; dz < span; dz++) {
+                final Chunk chunk = world.getLoadedChunk(cameraChunkX - renderDistance + dx, cameraChunkZ - renderDistance + dz);
+                if (chunk == null) continue;
+
+                final int[] chunkHeights = chunk.getOccluderHeights(opaque);
+                for (int cell = 0; cell < chunkHeights.length; cell++) {
+                    heights[(dz * cells + cell / cells + 1) * cellSpan + dx * cells + cell % cells + 1] = chunkHeights[cell];
+                }
+            }
+        }
+
+        final float originX = (cameraChunkX - renderDistance) * 16f - Chunk.OCCLUDER_CELL;
+        final float originZ = (cameraChunkZ - renderDistance) * 16f - Chunk.OCCLUDER_CELL;
+        drawHull(heights, merged, cellSpan, originX, originZ, frustum, depthBuffer);
+        depthBuffer.finish();
+    }
+
+    /**
+     * Draws a heightmap of occluder cells, with a ring of empty cells around it, into the depth buffer.
+     * <p>
+     * Each cell is solid from 0 up to its height, but only the part above its lowest neighbour can be seen. Cells of
+     * the same height are merged greedily into rectangles first: the buffer only fills texels a single face covers
+     * completely, so every seam between two boxes costs a line of texels.
+     *
+     * @param merged scratch of the same size as {@code heights}
+     */
+    static void drawHull(int[] heights, boolean[] merged, int cellSpan, float originX, float originZ,
+                         ChunkFrustum frustum, OcclusionDepthBuffer depthBuffer) {
+        Arrays.fill(merged, false);
+        for (int z = 1; z < cellSpan - 1; z++) {
+            for (int x = 1; x < cellSpan - 1; x++) {
+                final int height = heights[z * cellSpan + x];
+                if (height == 0 || merged[z * cellSpan + x]) continue;
+
+                int endX = x + 1;
+                while (endX < cellSpan - 1 && heights[z * cellSpan + endX] == height && !merged[z * cellSpan + endX]) endX++;
+                int endZ = z + 1;
+                grow:
+                while (endZ < cellSpan - 1) {
+                    for (int i = x; i < endX; i++) {
+                        if (heights[endZ * cellSpan + i] != height || merged[endZ * cellSpan + i]) break grow;
+                    }
+                    endZ++;
+                }
+
+                int floor = height;
+                for (int cz = z; cz < endZ; cz++) {
+                    for (int cx = x; cx < endX; cx++) merged[cz * cellSpan + cx] = true;
+                    floor = Math.min(floor, Math.min(heights[cz * cellSpan + x - 1], heights[cz * cellSpan + endX]));
+                }
+                for (int cx = x; cx < endX; cx++) {
+                    floor = Math.min(floor, Math.min(heights[(z - 1) * cellSpan + cx], heights[endZ * cellSpan + cx]));
+                }
+
+                // Reaching a cell into neighbours at least as high stays inside solid blocks, and the faces then overlap
+                // the boxes next to them instead of meeting them in a seam
+                final int boxX0 = isAtLeast(heights, cellSpan, x - 1, x, z, endZ, height) ? x - 1 : x;
+                final int boxX1 = isAtLeast(heights, cellSpan, endX, endX + 1, z, endZ, height) ? endX + 1 : endX;
+                final int boxZ0 = isAtLeast(heights, cellSpan, x, endX, z - 1, z, height) ? z - 1 : z;
+                final int boxZ1 = isAtLeast(heights, cellSpan, x, endX, endZ, endZ + 1, height) ? endZ + 1 : endZ;
+
+                final float minX = originX + boxX0 * Chunk.OCCLUDER_CELL, maxX = originX + boxX1 * Chunk.OCCLUDER_CELL;
+                final float minZ = originZ + boxZ0 * Chunk.OCCLUDER_CELL, maxZ = originZ + boxZ1 * Chunk.OCCLUDER_CELL;
+                if (frustum.intersects(minX, floor, minZ, maxX, height, maxZ))
+                    depthBuffer.drawBox(minX, floor, minZ, maxX, height, maxZ);
+            }
+        }
+    }
+
+    private static boolean isAtLeast(int[] heights, int cellSpan, int x0, int x1, int z0, int z1, int height) {
+        for (int z = z0; z < z1; z++) {
+            for (int x = x0; x < x1; x++) {
+                if (heights[z * cellSpan + x] < height) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests the column of a chunk against the frustum, then the bounds of its section meshes against the depth buffer.
+     */
+    public boolean testChunk(Chunk chunk) {
+        final float originX = chunk.getChunkPos().x() * 16f;
+        final float originZ = chunk.getChunkPos().z() * 16f;
+        if (!frustum.testChunk(originX, originZ, chunk.getHeight())) return false;
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (ChunkSection section : chunk.getSections()) {
+            final ChunkMesh mesh = section.getMesh();
+            final float[] bounds = mesh == null ? null : mesh.getBounds();
+            if (bounds == null) continue;
+            minX = Math.min(minX, bounds[0]);
+            minY = Math.min(minY, bounds[1]);
+            minZ = Math.min(minZ, bounds[2]);
+            maxX = Math.max(maxX, bounds[3]);
+            maxY = Math.max(maxY, bounds[4]);
+            maxZ = Math.max(maxZ, bounds[5]);
+        }
+        if (minX > maxX) return true; // Nothing meshed yet, sections are skipped one by one anyway
+
+        if (depthBuffer.testBox(originX + minX, minY, originZ + minZ, originX + maxX, maxY, originZ + maxZ)) return true;
+        chunksHidden++;
+        return false;
+    }
+
+    /**
+     * Tests a section mesh of {@code chunk}, the mesh has to be the section's current one.
+     */
+    public boolean testSection(Chunk chunk, ChunkSection section, ChunkMesh mesh) {
+        final int chunkX = chunk.getChunkPos().x(), chunkZ = chunk.getChunkPos().z();
+        if (!occlusion.testSection(chunkX, section.getSectionY(), chunkZ)) return false;
+
+        final float originX = chunkX * 16f, originZ = chunkZ * 16f;
+        if (!frustum.testSection(mesh, originX, originZ)) return false;
+
+        final float[] bounds = mesh.getBounds();
+        if (depthBuffer.testBox(originX + bounds[0], bounds[1], originZ + bounds[2], originX + bounds[3], bounds[4], originZ + bounds[5]))
+            return true;
+        sectionsHidden++;
+        return false;
+    }
+
+    public ChunkFrustum getFrustum() {
+        return frustum;
+    }
+
+    public SectionOcclusionCuller getOcclusion() {
+        return occlusion;
+    }
+
+    public OcclusionDepthBuffer getDepthBuffer() {
+        return depthBuffer;
+    }
+
+    /**
+     * @return chunks that passed the frustum but were hidden by the depth buffer last frame
+     */
+    public int getChunksHidden() {
+        return chunksHidden;
+    }
+
+    /**
+     * @return sections that passed the other tests but were hidden by the depth buffer last frame
+     */
+    public int getSectionsHidden() {
+        return sectionsHidden;
+    }
+}
@@ -0,0 +1,70 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+
+/**
+ * View frustum test for chunks and their section meshes, rebuilt from {@code projection * view} once per frame.
+ * Counts what it lets through and what it rejects until the next {@link #update}.
+ */
+public final class ChunkFrustum {
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final FrustumIntersection frustum = new FrustumIntersection();
+
+    private int chunksDrawn, chunksCulled, sectionsDrawn, sectionsCulled;
+
+    public void update(Matrix4f projection, Matrix4f view) {
+        projection.mul(view, viewProjection);
+        frustum.set(viewProjection, false);
+        chunksDrawn = chunksCulled = sectionsDrawn = sectionsCulled = 0;
+    }
+
+    /**
+     * Tests the whole column of a chunk whose origin sits at {@code originX}, {@code originZ}.
+     */
+    public boolean testChunk(float originX, float originZ, int height) {
+        boolean visible = frustum.testAab(originX, 0, originZ, originX + 16, height, originZ + 16);
+        if (visible) chunksDrawn++;
+        else chunksCulled++;
+        return visible;
+    }
+
+    /**
+     * Tests the bounds of a section mesh drawn at {@code originX}, {@code originZ}. Empty meshes are never visible.
+     */
+    public boolean testSection(ChunkMesh mesh, float originX, float originZ) {
+        final float[] bounds = mesh.getBounds();
+        if (bounds == null) return false;
+
+        boolean visible = frustum.testAab(
+                originX + bounds[0], bounds[1], originZ + bounds[2],
+                originX + bounds[3], bounds[4], originZ + bounds[5]
+        );
+        if (visible) sectionsDrawn++;
+        else sectionsCulled++;
+        return visible;
+    }
+
+    /**
+     * Plain box test that doesn't count towards the drawn and culled numbers.
+     */
+    public boolean intersects(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        return frustum.testAab(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    public int getChunksDrawn() {
+        return chunksDrawn;
+    }
+
+    public int getChunksCulled() {
+        return chunksCulled;
+    }
+
+    public int getSectionsDrawn() {
+        return sectionsDrawn;
+    }
+
+    public int getSectionsCulled() {
+        return sectionsCulled;
+    }
+}
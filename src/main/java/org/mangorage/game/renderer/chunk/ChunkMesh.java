@@ -2,34 +2,42 @@ package org.mangorage.game.renderer.chunk;
 
 import java.util.List;
 
-import static org.lwjgl.opengl.ARBVertexArrayObject.glDeleteVertexArrays;
-import static org.lwjgl.opengl.GL15C.glDeleteBuffers;
-
+/**
+ * A mesh uploaded into the {@link ChunkVertexArena}. Its draw commands count from {@link #getFirstVertex()}.
+ */
 public final class ChunkMesh {
-    private final int vao;
-    private final int vbo;
+    private final ChunkVertexArena arena;
+    private int firstVertex; // -1 when the mesh is empty or disposed
     private final List<DrawCommand> drawCommands;
+    private final float[] bounds;
 
-    public ChunkMesh(int vao, int vbo, List<DrawCommand> drawCommands) {
-        this.vao = vao;
-        this.vbo = vbo;
+    public ChunkMesh(ChunkVertexArena arena, int firstVertex, List<DrawCommand> drawCommands, float[] bounds) {
+        this.arena = arena;
+        this.firstVertex = firstVertex;
         this.drawCommands = drawCommands;
+        this.bounds = bounds;
     }
 
-    public int getVao() {
-        return vao;
-    }
-
-    public int getVbo() {
-        return vbo;
+    public int getFirstVertex() {
+        return firstVertex;
     }
 
     public List<DrawCommand> drawCommands() {
         return drawCommands;
     }
 
+    /**
+     * @return min x, y, z and max x, y, z of the vertices in mesh space, or null when the mesh is empty
+     */
+    public float[] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Gives the mesh's range back to the arena.
+     */
     public void dispose() {
-        glDeleteBuffers(vbo);
-        glDeleteVertexArrays(vao);
+        if (firstVertex != -1) arena.free(firstVertex);
+        firstVertex = -1;
     }
 }
@@ -0,0 +1,272 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.mangorage.game.block.Block;
+import org.mangorage.game.core.BuiltInRegistries;
+import org.mangorage.game.core.Direction;
+import org.mangorage.game.renderer.block.BakedModel;
+import org.mangorage.game.renderer.block.BlockModels;
+import org.mangorage.game.renderer.block.Material;
+import org.mangorage.game.renderer.block.SimpleBlockRenderer;
+import org.mangorage.game.util.BlockGetter;
+import org.mangorage.game.world.chunk.PalettedContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * CPU side of chunk meshing, turns a block container into vertices and draw commands without touching GL.
+ * <p>
+ * Full cubes are greedy meshed: visible faces of the same block and direction that share a plane are merged
+ * into larger quads. Everything else goes through its own {@link org.mangorage.game.renderer.block.BlockRenderer}.
+ * Faces are copied from the {@link BlockModels} into one buffer per material and direction, which are then laid out
+ * back to back. Each buffer becomes its own draw range, so the renderer can skip the directions facing away from the
+ * camera.
+ * <p>
+ * Not thread safe, the buffers are reused by every {@link #build} call.
+ */
+public final class ChunkMeshBuilder implements AutoCloseable {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int NO_FACE = DIRECTIONS.length; // Bucket slot for faces without a single direction
+    private static final int FACE_SLOTS = DIRECTIONS.length + 1;
+
+    // Order of the direction ranges in a mesh. Opposite directions sit apart, so the up to three directions a camera
+    // looking down from one corner sees are mostly next to each other and draw as one range
+    private static final Direction[] LAYOUT = {
+            Direction.WEST, Direction.NORTH, Direction.UP, Direction.SOUTH, Direction.EAST, Direction.DOWN, null
+    };
+
+    private final BlockModels models;
+
+    // Faces are written to the buffer of their material and direction and then laid out back to back into vertexBuilder
+    private VertexBuilder[] buckets = new VertexBuilder[0];
+    private final VertexBuilder vertexBuilder = new VertexBuilder();
+    private final EnumMap<Direction, Block> neighbors = new EnumMap<>(Direction.class);
+    private List<DrawCommand> drawCommands = List.of();
+    private final SectionVisibility visibilityGraph;
+    private long visibility = SectionVisibility.ALL;
+
+    private int[] cells = new int[16 * 16 * 16];
+    private int[] mask = new int[16 * 16];
+    private final int[] pos = new int[3];
+
+    public ChunkMeshBuilder(BlockModels models) {
+        this.models = models;
+        this.visibilityGraph = new SectionVisibility(models::isOpaque);
+    }
+
+    /**
+     * Meshes a block container whose origin sits at {@code offsetY} in chunk space.
+     * Neighbours outside the container are looked up through {@code outside}, if present.
+     */
+    public void build(PalettedContainer blocks, int offsetY, BlockGetter outside) {
+        final int width = blocks.getSizeX();
+        final int height = blocks.getSizeY();
+        final int depth = blocks.getSizeZ();
+
+        // Unpack the container once, every lookup below is then a plain array read
+        final int volume = width * height * depth;
+        if (cells.length < volume) cells = new int[volume];
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int z = 0; z < depth; z++) {
+                for (int x = 0; x < width; x++, i++) {
+                    cells[i] = blocks.get(x, y, z);
+                }
+            }
+        }
+
+        for (VertexBuilder bucket : buckets) {
+            if (bucket != null) bucket.reset();
+        }
+
+        greedyMesh(width, height, depth, offsetY, outside);
+
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int z = 0; z < depth; z++) {
+                for (int x = 0; x < width; x++, i++) {
+                    final int id = cells[i];
+                    if (!models.isRendered(id) || models.isFullCube(id)) continue; // Full cubes were handled by the greedy pass
+
+                    final BakedModel model = models.get(id);
+                    neighbors.clear();
+                    for (Direction dir : DIRECTIONS) {
+                        int nx = x + dir.x;
+                        int ny = y + dir.y;
+                        int nz = z + dir.z;
+
+                        if (nx >= 0 && nx < width && nz >= 0 && nz < depth && ny >= 0 && ny < height) {
+                            // Inside current container
+                            neighbors.put(dir, BuiltInRegistries.BLOCK_REGISTRY.getByInternalId(cells[(ny * depth + nz) * width + nx]));
+                        } else if (outside != null) {
+                            neighbors.put(dir, outside.getBlock(nx, ny + offsetY, nz));
+                        }
+                    }
+
+                    model.getBlock().getRenderer().render(this, model, x, y + offsetY, z, neighbors);
+                }
+            }
+        }
+
+        drawCommands = assemble();
+        visibility = visibilityGraph.compute(cells, width, height, depth);
+    }
+
+    /**
+     * @param face where the faces point, null for faces that don't share one direction
+     * @return the buffer faces with this material and direction are written to while building
+     */
+    public VertexBuilder getBuffer(Material material, Direction face) {
+        final int index = material.id() * FACE_SLOTS + (face == null ? NO_FACE : face.ordinal());
+        if (index >= buckets.length) buckets = Arrays.copyOf(buckets, models.getMaterials().size() * FACE_SLOTS);
+        VertexBuilder bucket = buckets[index];
+        if (bucket == null) bucket = buckets[index] = new VertexBuilder();
+        return bucket;
+    }
+
+    public VertexBuilder getVertices() {
+        return vertexBuilder;
+    }
+
+    public List<DrawCommand> getDrawCommands() {
+        return drawCommands;
+    }
+
+    /**
+     * @return which faces of the last container can see each other, see {@link SectionVisibility}
+     */
+    public long getVisibility() {
+        return visibility;
+    }
+
+    /**
+     * Sweeps every layer of the container once per direction. Each layer gets a mask of the full cube faces that
+     * are visible in it, which is then covered with as few rectangles as possible, growing along the width first.
+     */
+    private void greedyMesh(int width, int height, int depth, int offsetY, BlockGetter outside) {
+        final int[] size = {width, height, depth};
+        final int[] stride = {1, width * depth, width}; // Cell index step along x, y, z
+
+        for (Direction dir : DIRECTIONS) {
+            // Same plane axes as SimpleBlockRenderer#renderFace
+            final int axisA = dir.x != 0 ? 2 : 0;
+            final int axisB = dir.y != 0 ? 2 : 1;
+            final int axisN = 3 - axisA - axisB;
+            final int sizeA = size[axisA], sizeB = size[axisB];
+            final int neighborStep = dir.x * stride[0] + dir.y * stride[1] + dir.z * stride[2];
+            if (mask.length < sizeA * sizeB) mask = new int[sizeA * sizeB];
+
+            for (int n = 0; n < size[axisN]; n++) {
+                pos[axisN] = n;
+                final int neighborN = n + (axisN == 0 ? dir.x : axisN == 1 ? dir.y : dir.z);
+                final boolean neighborInside = neighborN >= 0 && neighborN < size[axisN];
+
+                boolean empty = true;
+                for (int b = 0; b < sizeB; b++) {
+                    for (int a = 0; a < sizeA; a++) {
+                        final int cell = n * stride[axisN] + b * stride[axisB] + a * stride[axisA];
+                        final int id = cells[cell];
+
+                        int faceId = 0; // Internal ids start at 1, 0 marks no face
+                        if (models.isFullCube(id)) {
+                            boolean hidden;
+                            if (neighborInside) {
+                                hidden = models.hidesFaces(cells[cell + neighborStep]);
+                            } else if (outside != null) {
+                                pos[axisA] = a;
+                                pos[axisB] = b;
+                                hidden = models.hidesFaces(outside.getBlockId(pos[0] + dir.x, pos[1] + dir.y + offsetY, pos[2] + dir.z));
+                            } else {
+                                hidden = false;
+                            }
+                            if (!hidden) faceId = id;
+                        }
+                        mask[b * sizeA + a] = faceId;
+                        if (faceId != 0) empty = false;
+                    }
+                }
+                if (empty) continue;
+
+                for (int b = 0; b < sizeB; b++) {
+                    for (int a = 0; a < sizeA; ) {
+                        final int id = mask[b * sizeA + a];
+                        if (id == 0) {
+                            a++;
+                            continue;
+                        }
+
+                        int faceWidth = 1;
+                        while (a + faceWidth < sizeA && mask[b * sizeA + a + faceWidth] == id) faceWidth++;
+
+                        int faceHeight = 1;
+                        grow:
+                        while (b + faceHeight < sizeB) {
+                            for (int k = 0; k < faceWidth; k++) {
+                                if (mask[(b + faceHeight) * sizeA + a + k] != id) break grow;
+                            }
+                            faceHeight++;
+                        }
+
+                        for (int h = 0; h < faceHeight; h++) {
+                            Arrays.fill(mask, (b + h) * sizeA + a, (b + h) * sizeA + a + faceWidth, 0);
+                        }
+
+                        pos[axisA] = a;
+                        pos[axisB] = b;
+                        final BakedModel model = models.get(id);
+                        ((SimpleBlockRenderer) model.getBlock().getRenderer()).renderFace(
+                                this, model, dir,
+                                pos[0], pos[1] + offsetY, pos[2],
+                                faceWidth, faceHeight
+                        );
+                        a += faceWidth;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Lays the buffers out back to back with one draw command each, grouped by material. Overlay materials go last,
+     * so they draw after the faces they sit on.
+     */
+    private List<DrawCommand> assemble() {
+        vertexBuilder.reset();
+        List<DrawCommand> commands = new ArrayList<>();
+        for (int pass = 0; pass < 2; pass++) {
+            for (Material material : models.getMaterials()) {
+                if (material.overlay() != (pass == 1)) continue;
+                for (Direction face : LAYOUT) {
+                    final int index = material.id() * FACE_SLOTS + (face == null ? NO_FACE : face.ordinal());
+                    if (index >= buckets.length) continue;
+                    VertexBuilder bucket = buckets[index];
+                    if (bucket == null || bucket.isEmpty()) continue;
+
+                    int start = vertexBuilder.getVertexCount();
+                    vertexBuilder.put(bucket, 0, bucket.getVertexCount());
+                    commands.add(new DrawCommand(start, bucket.getVertexCount(), material.extra(), face, facePlane(bucket, face)));
+                }
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * @see DrawCommand#plane()
+     */
+    private static float facePlane(VertexBuilder bucket, Direction face) {
+        if (face == null) return 0;
+        final float[] bounds = bucket.getBounds();
+        final int axis = face.x != 0 ? 0 : face.y != 0 ? 1 : 2;
+        final boolean positive = face.x + face.y + face.z > 0;
+        return positive ? bounds[axis] : bounds[axis + 3];
+    }
+
+    @Override
+    public void close() {
+        for (VertexBuilder bucket : buckets) {
+            if (bucket != null) bucket.close();
+        }
+        vertexBuilder.close();
+    }
+}
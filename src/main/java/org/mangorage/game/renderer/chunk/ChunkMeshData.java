@@ -0,0 +1,72 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * CPU side of a built mesh, detached from the {@link ChunkMeshBuilder} that made it so it can wait for the
+ * render thread to upload it. Owns native memory until closed.
+ */
+public final class ChunkMeshData implements AutoCloseable {
+    private ByteBuffer vertices; // Null when empty
+    private final int vertexCount;
+    private final List<DrawCommand> drawCommands;
+    private final float[] bounds;
+    private final long visibility;
+
+    private ChunkMeshData(ByteBuffer vertices, int vertexCount, List<DrawCommand> drawCommands, float[] bounds, long visibility) {
+        this.vertices = vertices;
+        this.vertexCount = vertexCount;
+        this.drawCommands = drawCommands;
+        this.bounds = bounds;
+        this.visibility = visibility;
+    }
+
+    /**
+     * Copies the last mesh the builder produced.
+     */
+    public static ChunkMeshData copyOf(ChunkMeshBuilder builder) {
+        final VertexBuilder source = builder.getVertices();
+        ByteBuffer vertices = null;
+        if (!source.isEmpty()) {
+            ByteBuffer data = source.getBuffer();
+            vertices = MemoryUtil.memAlloc(data.remaining());
+            MemoryUtil.memCopy(data, vertices);
+        }
+        return new ChunkMeshData(vertices, source.getVertexCount(), builder.getDrawCommands(), source.getBounds(), builder.getVisibility());
+    }
+
+    public ByteBuffer getVertices() {
+        return vertices;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public List<DrawCommand> getDrawCommands() {
+        return drawCommands;
+    }
+
+    /**
+     * @see VertexBuilder#getBounds()
+     */
+    public float[] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * @see ChunkMeshBuilder#getVisibility()
+     */
+    public long getVisibility() {
+        return visibility;
+    }
+
+    @Override
+    public void close() {
+        if (vertices != null) MemoryUtil.memFree(vertices);
+        vertices = null;
+    }
+}
@@ -0,0 +1,109 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.mangorage.game.renderer.block.BlockModels;
+import org.mangorage.game.util.BlockGetter;
+import org.mangorage.game.world.chunk.PalettedContainer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Builds chunk meshes on a {@link ForkJoinPool} and hands them back to the render thread.
+ * <p>
+ * Workers only read the inputs given to {@link #submit}, which have to stay unchanged until the build is done,
+ * and each takes a {@link ChunkMeshBuilder} from a shared pool. Finished meshes wait in a queue until the render
+ * thread calls {@link #uploadCompleted()}, which is where the callback given to {@link #submit} runs and the GL
+ * upload happens. The callback decides whether the mesh is still wanted.
+ */
+public final class ChunkMeshScheduler implements AutoCloseable {
+    private record Completed(ChunkMeshData data, Consumer<ChunkMeshData> onBuilt) {}
+
+    private final BlockModels models;
+    private final ForkJoinPool pool;
+    private final Queue<ChunkMeshBuilder> idleBuilders = new ConcurrentLinkedQueue<>();
+    private final Queue<Completed> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger building = new AtomicInteger();
+
+    public ChunkMeshScheduler(BlockModels models) {
+        this.models = models;
+        this.pool = new ForkJoinPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                forkJoinPool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                    thread.setName("Chunk Mesher-" + thread.getPoolIndex());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                null,
+                true // FIFO, sections are meshed in the order they were submitted
+        );
+    }
+
+    /**
+     * Meshes a block container on a worker, see {@link ChunkMeshBuilder#build}.
+     * {@code onBuilt} runs on the render thread during {@link #uploadCompleted()}, the data is freed right after it returns.
+     */
+    public void submit(PalettedContainer blocks, int offsetY, BlockGetter outside, Consumer<ChunkMeshData> onBuilt) {
+        building.incrementAndGet();
+        pool.execute(() -> {
+            ChunkMeshBuilder builder = idleBuilders.poll();
+            if (builder == null) builder = new ChunkMeshBuilder(models);
+            try {
+                builder.build(blocks, offsetY, outside);
+                completed.add(new Completed(ChunkMeshData.copyOf(builder), onBuilt));
+            } catch (Throwable e) {
+                building.decrementAndGet();
+                System.err.println("Failed to build chunk mesh");
+                e.printStackTrace();
+            } finally {
+                idleBuilders.add(builder);
+            }
+        });
+    }
+
+    /**
+     * Render thread only. Passes every finished mesh to its callback.
+     *
+     * @return how many meshes were handed over
+     */
+    public int uploadCompleted() {
+        int count = 0;
+        Completed result;
+        while ((result = completed.poll()) != null) {
+            building.decrementAndGet();
+            try (ChunkMeshData data = result.data()) {
+                result.onBuilt().accept(data);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return meshes submitted but not handed over yet
+     */
+    public int getPendingCount() {
+        return building.get();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        try {
+            if (!pool.awaitTermination(5, TimeUnit.SECONDS))
+                System.err.println("Timed out waiting for chunk meshers to finish");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Completed result;
+        while ((result = completed.poll()) != null) result.data().close();
+        ChunkMeshBuilder builder;
+        while ((builder = idleBuilders.poll()) != null) builder.close();
+    }
+}
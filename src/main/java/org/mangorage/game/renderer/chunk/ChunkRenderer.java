@@ -1,28 +1,22 @@
 package org.mangorage.game.renderer.chunk;
 
 import org.joml.Matrix4f;
-import org.lwjgl.BufferUtils;
-import org.lwjgl.opengl.EXTTextureFilterAnisotropic;
-import org.lwjgl.opengl.GL;
+import org.joml.Vector3f;
+import org.lwjgl.PointerBuffer;
 import org.lwjgl.system.MemoryStack;
-import org.mangorage.game.block.Block;
-import org.mangorage.game.core.BuiltInRegistries;
-import org.mangorage.game.core.Direction;
+import org.lwjgl.system.MemoryUtil;
 import org.mangorage.game.renderer.block.AssetLoader;
+import org.mangorage.game.renderer.block.BlockModels;
+import org.mangorage.game.renderer.block.Material;
+import org.mangorage.game.util.BlockGetter;
 import org.mangorage.game.util.supplier.InitializableSupplier;
-import org.mangorage.game.world.World;
-import org.mangorage.game.world.chunk.Chunk;
-import org.mangorage.game.world.chunk.ChunkPos;
+import org.mangorage.game.world.chunk.PalettedContainer;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
-import java.util.EnumMap;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Consumer;
 
 import static org.lwjgl.opengl.GL11.*;
@@ -30,8 +24,7 @@ import static org.lwjgl.opengl.GL13.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
-import static org.lwjgl.stb.STBImage.*;
-import static org.mangorage.game.util.RenderUtil.rotateUVs;
+import static org.lwjgl.opengl.GL32.*;
 
 public final class ChunkRenderer {
     private static final InitializableSupplier<ChunkRenderer> INSTANCE = InitializableSupplier.of(ChunkRenderer::new);
@@ -43,136 +36,185 @@ public final class ChunkRenderer {
         return INSTANCE.get();
     }
 
+    private static final int INDICES_PER_QUAD = 6;
+    private static final int VERTICES_PER_QUAD = 4;
+    private static final int INITIAL_ARENA_VERTICES = 1 << 20; // 12 MB
+
     private final int shaderProgram;
-    private final int modelLoc, viewLoc, projLoc, texUniformSampler, texUniform, tintLoc;
+    private final int viewProjectionLoc, chunkOffsetLoc;
 
     private final AssetLoader assetLoader = new AssetLoader();
+    private final BlockModels blockModels = BlockModels.bake(assetLoader);
+    private final ChunkMeshBuilder meshBuilder = new ChunkMeshBuilder(blockModels); // Reused by every buildMesh call
+    private final ChunkMeshScheduler meshScheduler = new ChunkMeshScheduler(blockModels);
+    private final int textureArray; // Every block texture, one layer each
 
-    ChunkRenderer() {
-        shaderProgram = createShaderProgram();
-
-        modelLoc = glGetUniformLocation(shaderProgram, "model");
-        viewLoc = glGetUniformLocation(shaderProgram, "view");
-        projLoc = glGetUniformLocation(shaderProgram, "projection");
-        texUniformSampler = glGetUniformLocation(shaderProgram, "texSampler");
-
-        tintLoc = glGetUniformLocation(shaderProgram, "tint");
-        texUniform = glGetUniformLocation(shaderProgram, "tex"); // or whatever your sampler uniform is named
-    }
+    // Indices 0, 1, 2, 0, 2, 3 for every quad, shared by all chunk meshes and grown when a mesh needs more.
+    // Draws offset them with a base vertex, so they only have to cover the largest mesh
+    private final int quadIndexBuffer;
+    private int quadIndexCapacity = 0;
 
-    public ChunkMesh buildMesh(World world, ChunkPos chunkPos, int[][][] blocks) {
-        List<Float> vertices = new ArrayList<>();
-        List<DrawCommand> drawCommands = new ArrayList<>();
+    private final ChunkVertexArena vertexArena; // Holds the vertices of every mesh
 
-        int width = blocks.length;
-        int height = blocks[0].length;
-        int depth = blocks[0][0].length;
+    // Ranges of one multi draw call
+    private IntBuffer drawCounts = MemoryUtil.memAllocInt(16);
+    private IntBuffer drawBaseVertices = MemoryUtil.memAllocInt(16);
+    private PointerBuffer drawOffsets = MemoryUtil.memCallocPointer(16); // Always 0, the base vertex does the offsetting
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                for (int z = 0; z < depth; z++) {
+    private int drawCalls = 0;
+    private int verticesDrawn = 0, verticesSkipped = 0;
 
-                    Block currentBlock = BuiltInRegistries.BLOCK_REGISTRY.getByInternalId(blocks[x][y][z]);
-                    if (currentBlock == null || currentBlock.isAir()) continue;
+    private final List<Consumer<Boolean>> passExtras = new ArrayList<>(); // Distinct material render states, in draw order
+    private Consumer<Boolean> activeExtra = null;
 
+    // Sections queued for the world pass, with their origins
+    private ChunkMesh[] queuedMeshes = new ChunkMesh[256];
+    private float[] queuedOrigins = new float[256 * 3];
+    private int queuedCount = 0;
+    private boolean inWorldPass = false;
+    private final Vector3f passCamera = new Vector3f();
 
-                    EnumMap<Direction, Block> blockEnumMap = new EnumMap<>(Direction.class);
+    // Scratch, render thread only
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Matrix4f modelView = new Matrix4f();
+    private final Vector3f meshCamera = new Vector3f();
 
+    ChunkRenderer() {
+        shaderProgram = createShaderProgram();
 
-                    for (Direction dir : Direction.values()) {
-                        int nx = x + dir.x;
-                        int ny = y + dir.y;
-                        int nz = z + dir.z;
+        viewProjectionLoc = glGetUniformLocation(shaderProgram, "viewProjection");
+        chunkOffsetLoc = glGetUniformLocation(shaderProgram, "chunkOffset");
 
-                        if (nx >= 0 && nx < 16 && nz >= 0 && nz < 16 && ny >= 0 && ny < height) {
-                            // Inside current chunk
-                            blockEnumMap.put(dir, BuiltInRegistries.BLOCK_REGISTRY.getByInternalId(blocks[nx][ny][nz]));
-                        }
-                    }
+        glUseProgram(shaderProgram);
+        glUniform1i(glGetUniformLocation(shaderProgram, "texSampler"), 0); // The texture array always sits in unit 0
+        glUniform1fv(glGetUniformLocation(shaderProgram, "shades"), blockModels.getShades()); // Every model is baked, so the palettes are complete
+        glUniform3fv(glGetUniformLocation(shaderProgram, "tints"), blockModels.getTints());
+        glUseProgram(0);
 
-                    currentBlock.getRenderer()
-                            .render(
-                                    drawCommands,
-                                    vertices,
-                                    currentBlock,
-                                    x, y, z,
-                                    blockEnumMap,
-                                    assetLoader
-                            );
-                }
+        // Render states in draw order, plain materials first and overlays after the faces they sit on
+        for (int pass = 0; pass < 2; pass++) {
+            for (Material material : blockModels.getMaterials()) {
+                if (material.overlay() == (pass == 1) && !passExtras.contains(material.extra())) passExtras.add(material.extra());
             }
         }
 
-        int meshVao = glGenVertexArrays();
-        int meshVbo = glGenBuffers();
-
-        glBindVertexArray(meshVao);
-        glBindBuffer(GL_ARRAY_BUFFER, meshVbo);
+        textureArray = assetLoader.uploadTextureArray(); // Every model is baked, so every texture is known by now
 
-        if (!vertices.isEmpty()) {
-            float[] vertexArray = new float[vertices.size()];
-            for (int i = 0; i < vertexArray.length; i++) vertexArray[i] = vertices.get(i);
+        quadIndexBuffer = glGenBuffers();
+        ensureQuadIndices(16 * 1024);
+        vertexArena = new ChunkVertexArena(INITIAL_ARENA_VERTICES, quadIndexBuffer);
+    }
 
-            glBufferData(GL_ARRAY_BUFFER, vertexArray, GL_STATIC_DRAW);
+    /**
+     * Makes sure the shared index buffer covers at least {@code quads} quads.
+     * The arena keeps the buffer bound in its VAO, so it is refilled in place rather than replaced.
+     */
+    private void ensureQuadIndices(int quads) {
+        if (quads <= quadIndexCapacity) return;
+
+        final int capacity = Math.max(quads, quadIndexCapacity * 2);
+        IntBuffer indices = MemoryUtil.memAllocInt(capacity * INDICES_PER_QUAD);
+        try {
+            for (int quad = 0; quad < capacity; quad++) {
+                int first = quad * VERTICES_PER_QUAD;
+                indices.put(first).put(first + 1).put(first + 2)
+                        .put(first).put(first + 2).put(first + 3);
+            }
+            indices.flip();
+
+            glBindVertexArray(0); // Binding the element buffer would otherwise change whatever VAO is bound
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, quadIndexBuffer);
+            glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+            glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+        } finally {
+            MemoryUtil.memFree(indices);
+        }
+        quadIndexCapacity = capacity;
+    }
 
-            glVertexAttribPointer(0, 3, GL_FLOAT, false, 5 * Float.BYTES, 0);
-            glEnableVertexAttribArray(0);
+    /**
+     * Builds a mesh for a block container whose origin sits at {@code offsetY} in chunk space, right away on the calling thread.
+     * Neighbours outside the container are looked up through {@code outside}, if present.
+     */
+    public ChunkMesh buildMesh(PalettedContainer blocks, int offsetY, BlockGetter outside) {
+        meshBuilder.build(blocks, offsetY, outside);
+        VertexBuilder vertices = meshBuilder.getVertices();
+        return upload(vertices.isEmpty() ? null : vertices.getBuffer(), vertices.getVertexCount(), meshBuilder.getDrawCommands(), vertices.getBounds());
+    }
 
-            glVertexAttribPointer(1, 2, GL_FLOAT, false, 5 * Float.BYTES, 3 * Float.BYTES);
-            glEnableVertexAttribArray(1);
-        } else {
-            glBufferData(GL_ARRAY_BUFFER, 0, GL_STATIC_DRAW);
-        }
+    /**
+     * Like {@link #buildMesh} but on the mesh workers. {@code blocks} and {@code outside} must not change until
+     * the build is done. {@code onBuilt} gets the result on the render thread during {@link #uploadBuiltMeshes()}
+     * and can {@link #upload} it, the data is freed once it returns.
+     */
+    public void buildMeshAsync(PalettedContainer blocks, int offsetY, BlockGetter outside, Consumer<ChunkMeshData> onBuilt) {
+        meshScheduler.submit(blocks, offsetY, outside, onBuilt);
+    }
 
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glBindVertexArray(0);
+    /**
+     * Hands meshes finished by the workers to their callbacks, call once per frame on the render thread.
+     */
+    public void uploadBuiltMeshes() {
+        meshScheduler.uploadCompleted();
+    }
 
-        return new ChunkMesh(meshVao, meshVbo, drawCommands);
+    public BlockModels getBlockModels() {
+        return blockModels;
     }
 
+    /**
+     * @return meshes queued on or being built by the workers
+     */
+    public int getPendingMeshes() {
+        return meshScheduler.getPendingCount();
+    }
 
-    private void addFaceVertices(List<Float> vertices, int x, int y, int z, Block blockInstance, Direction dir) {
-        float[][] face = blockInstance.getShape()[dir.ordinal()];
-        float[] texCoords = new float[] { 0,0, 1,0, 1,1, 0,0, 1,1, 0,1 };
+    public ChunkMesh upload(ChunkMeshData data) {
+        return upload(data.getVertices(), data.getVertexCount(), data.getDrawCommands(), data.getBounds());
+    }
 
-        if (dir == Direction.EAST || dir == Direction.NORTH) {
-            texCoords = rotateUVs(texCoords, 270);
-        }
+    private ChunkMesh upload(ByteBuffer vertices, int vertexCount, List<DrawCommand> drawCommands, float[] bounds) {
+        if (vertices == null) return new ChunkMesh(vertexArena, -1, drawCommands, bounds);
 
-        for (int i = 0; i < face.length; i++) {
-            vertices.add(face[i][0] + x);
-            vertices.add(face[i][1] + y);
-            vertices.add(face[i][2] + z);
-            vertices.add(texCoords[i * 2]);
-            vertices.add(texCoords[i * 2 + 1]);
-        }
+        ensureQuadIndices(vertexCount / VERTICES_PER_QUAD);
+        return new ChunkMesh(vertexArena, vertexArena.allocate(vertices, vertexCount), drawCommands, bounds);
     }
 
     private int createShaderProgram() {
         String vertexShaderSrc = """
                 #version 330 core
-                layout(location = 0) in vec3 aPos;
-                layout(location = 1) in vec2 aTexCoord;
+                layout(location = 0) in uvec4 aPacked; // Position, shade, tint, layer and uv, see VertexBuilder
                 out vec2 TexCoord;
-                uniform mat4 model;
-                uniform mat4 view;
-                uniform mat4 projection;
+                out vec3 Color;
+                flat out uint Layer;
+                uniform vec3 chunkOffset; // Chunk origin in the world pass
+                uniform mat4 viewProjection; // With the model folded in for a mesh drawn on its own
+                uniform float shades[%d];
+                uniform vec3 tints[%d];
                 void main() {
-                    gl_Position = projection * view * model * vec4(aPos, 1.0);
-                    TexCoord = aTexCoord;
+                    vec3 pos = vec3(aPacked.xyz & %du) / %d.0;
+                    gl_Position = viewProjection * vec4(pos + chunkOffset, 1.0);
+                    TexCoord = vec2(aPacked.w & 0xFFu, aPacked.w >> 8u) / %d.0;
+                    Color = tints[aPacked.y >> %du] * shades[aPacked.x >> %du];
+                    Layer = aPacked.z >> %du;
                 }
-                """;
+                """.formatted(
+                VertexBuilder.MAX_SHADES, VertexBuilder.MAX_TINTS,
+                (1 << VertexBuilder.POSITION_BITS) - 1, VertexBuilder.POSITION_SCALE, VertexBuilder.UV_SCALE,
+                VertexBuilder.POSITION_BITS, VertexBuilder.POSITION_BITS, VertexBuilder.POSITION_BITS
+        );
 
         String fragmentShaderSrc = """
                 #version 330 core
                 in vec2 TexCoord;
+                in vec3 Color; // Tint and face shading
+                flat in uint Layer;
                 out vec4 FragColor;
-                uniform sampler2D texSampler;
-                uniform vec3 tint;  // The tint color, default is white if no tint
-                
+                uniform sampler2DArray texSampler;
+
                 void main() {
-                    vec4 texColor = texture(texSampler, TexCoord);
-                    FragColor = vec4(texColor.rgb * tint, texColor.a);
+                    vec4 texColor = texture(texSampler, vec3(TexCoord, Layer));
+                    FragColor = vec4(texColor.rgb * Color, texColor.a);
                 }
                 """;
 
@@ -210,57 +252,224 @@ public final class ChunkRenderer {
         }
     }
 
+    /**
+     * Starts the world pass. Sections queued with {@link #queueSection} are drawn together by {@link #endWorldPass},
+     * which sets the program, the shared uniforms and the vertex arena up once for all of them.
+     */
+    public void beginWorldPass(Vector3f cameraPos) {
+        if (inWorldPass) throw new IllegalStateException("World pass already started");
+        inWorldPass = true;
+        queuedCount = 0;
+        passCamera.set(cameraPos);
+    }
+
+    /**
+     * Queues a section mesh for the world pass, drawn with its origin at {@code originX}, {@code originY}, {@code originZ}.
+     */
+    public void queueSection(ChunkMesh mesh, float originX, float originY, float originZ) {
+        if (!inWorldPass) throw new IllegalStateException("World pass not started");
+        if (mesh.getFirstVertex() == -1) return; // Empty
+
+        if (queuedCount == queuedMeshes.length) {
+            queuedMeshes = Arrays.copyOf(queuedMeshes, queuedCount * 2);
+            queuedOrigins = Arrays.copyOf(queuedOrigins, queuedCount * 2 * 3);
+        }
+        queuedMeshes[queuedCount] = mesh;
+        queuedOrigins[queuedCount * 3] = originX;
+        queuedOrigins[queuedCount * 3 + 1] = originY;
+        queuedOrigins[queuedCount * 3 + 2] = originZ;
+        queuedCount++;
+    }
+
+    /**
+     * Draws every queued section. Each render state is set once per frame: all plain faces go first, then every
+     * overlay. Between chunks only the chunk offset uniform changes.
+     */
+    public void endWorldPass(Matrix4f view, Matrix4f projection) {
+        if (!inWorldPass) throw new IllegalStateException("World pass not started");
+        inWorldPass = false;
+        if (queuedCount == 0) return;
+
+        beginDraw(projection.mul(view, viewProjection));
+
+        // Sections are queued chunk by chunk, so runs of them share an offset and their ranges go into one draw
+        float offsetX = 0, offsetY = 0, offsetZ = 0;
+        glUniform3f(chunkOffsetLoc, offsetX, offsetY, offsetZ);
+        for (Consumer<Boolean> extra : passExtras) {
+            for (int i = 0; i < queuedCount; i++) {
+                if (!hasRanges(queuedMeshes[i], extra)) continue; // Keeps the offset of the chunk before it
+
+                final float x = queuedOrigins[i * 3], y = queuedOrigins[i * 3 + 1], z = queuedOrigins[i * 3 + 2];
+                if (x != offsetX || y != offsetY || z != offsetZ) {
+                    submitRanges(extra);
+                    glUniform3f(chunkOffsetLoc, x, y, z);
+                    offsetX = x;
+                    offsetY = y;
+                    offsetZ = z;
+                }
+                collectRanges(queuedMeshes[i], passCamera.x - x, passCamera.y - y, passCamera.z - z, extra);
+            }
+            submitRanges(extra);
+        }
+        Arrays.fill(queuedMeshes, 0, queuedCount, null);
+        queuedCount = 0;
+
+        endDraw();
+    }
+
+    /**
+     * Draws a single mesh on its own, placed by {@code model}, outside the world pass.
+     */
     public void render(ChunkMesh chunkMesh, Matrix4f model, Matrix4f view, Matrix4f projection) {
-        glUseProgram(shaderProgram);
+        if (chunkMesh.getFirstVertex() == -1) return; // Empty
+
+        beginDraw(projection.mul(view, viewProjection).mul(model));
+        glUniform3f(chunkOffsetLoc, 0, 0, 0);
+
+        // The camera is the eye of view * model, which holds for perspective projections
+        view.mul(model, modelView).invertAffine().getTranslation(meshCamera);
+        for (Consumer<Boolean> extra : passExtras) {
+            if (collectRanges(chunkMesh, meshCamera.x, meshCamera.y, meshCamera.z, extra)) submitRanges(extra);
+        }
+
+        endDraw();
+    }
 
+    private void beginDraw(Matrix4f viewProjection) {
+        glUseProgram(shaderProgram);
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            glUniformMatrix4fv(modelLoc, false, model.get(stack.mallocFloat(16)));
-            glUniformMatrix4fv(viewLoc, false, view.get(stack.mallocFloat(16)));
-            glUniformMatrix4fv(projLoc, false, projection.get(stack.mallocFloat(16)));
+            glUniformMatrix4fv(viewProjectionLoc, false, viewProjection.get(stack.mallocFloat(16)));
         }
 
-        glBindVertexArray(chunkMesh.getVao());
+        glBindVertexArray(vertexArena.getVao());
         glActiveTexture(GL_TEXTURE0);
-        glUniform1i(texUniform, 0);
+        glBindTexture(GL_TEXTURE_2D_ARRAY, textureArray); // Vertices pick their layer, so one binding covers every mesh
+    }
 
-        int lastTexture = -1;
-        float[] lastTint = null;
-        Consumer<Boolean> lastExtra = null;
+    private void endDraw() {
+        applyExtra(null);
+        glBindVertexArray(0);
+        glUseProgram(0);
+    }
 
+    /**
+     * Switches material render state, only touching GL when it actually changes.
+     */
+    private void applyExtra(Consumer<Boolean> extra) {
+        if (activeExtra == extra) return;
+        if (activeExtra != null) activeExtra.accept(false);
+        if (extra != null) extra.accept(true);
+        activeExtra = extra;
+    }
+
+    private static boolean hasRanges(ChunkMesh chunkMesh, Consumer<Boolean> extra) {
         for (DrawCommand cmd : chunkMesh.drawCommands()) {
-            if (cmd.textureId() != lastTexture) {
-                glBindTexture(GL_TEXTURE_2D, cmd.textureId());
-                lastTexture = cmd.textureId();
-            }
+            if (cmd.extra() == extra) return true;
+        }
+        return false;
+    }
 
-            Consumer<Boolean> extra = cmd.extra();
-            if (lastExtra != extra) {
-                if (lastExtra != null) lastExtra.accept(false);
-                if (extra != null) extra.accept(true);
-                lastExtra = extra;
+    /**
+     * Collects the ranges of a mesh with this render state for {@link #submitRanges}. Ranges whose faces all point
+     * away from the camera, given in mesh space, are skipped and the rest are merged where they touch.
+     *
+     * @return true if there is anything to draw
+     */
+    private boolean collectRanges(ChunkMesh chunkMesh, float cameraX, float cameraY, float cameraZ, Consumer<Boolean> extra) {
+        int rangeEnd = -1;
+        for (DrawCommand cmd : chunkMesh.drawCommands()) {
+            if (cmd.extra() != extra) continue;
+            if (!cmd.isFacing(cameraX, cameraY, cameraZ)) {
+                verticesSkipped += cmd.vertexCount();
+                continue;
             }
 
-            float[] tint = cmd.tint();
-            if (lastTint == null || !java.util.Arrays.equals(tint, lastTint)) {
-                if (tint == null) {
-                    glUniform3f(tintLoc, 1f, 1f, 1f);
-                } else {
-                    glUniform3f(tintLoc, tint[0], tint[1], tint[2]);
-                }
-                lastTint = tint;
+            final int quadIndices = cmd.vertexCount() / VERTICES_PER_QUAD * INDICES_PER_QUAD;
+            if (cmd.startIndex() == rangeEnd) {
+                final int last = drawCounts.position() - 1;
+                drawCounts.put(last, drawCounts.get(last) + quadIndices);
+            } else {
+                if (!drawCounts.hasRemaining()) growDrawRanges();
+                drawCounts.put(quadIndices);
+                drawBaseVertices.put(chunkMesh.getFirstVertex() + cmd.startIndex());
             }
+            rangeEnd = cmd.startIndex() + cmd.vertexCount();
+            verticesDrawn += cmd.vertexCount();
+        }
+        return drawCounts.position() > 0;
+    }
 
-            glDrawArrays(GL_TRIANGLES, cmd.startIndex(), cmd.vertexCount());
+    /**
+     * Draws the collected ranges with one call. Ranges hold whole quads, so every range starts at the first quad
+     * index and its base vertex moves it to its place in the arena.
+     */
+    private void submitRanges(Consumer<Boolean> extra) {
+        final int ranges = drawCounts.position();
+        if (ranges == 0) return;
+        applyExtra(extra);
+
+        if (ranges == 1) {
+            glDrawElementsBaseVertex(GL_TRIANGLES, drawCounts.get(0), GL_UNSIGNED_INT, 0L, drawBaseVertices.get(0));
+        } else {
+            drawCounts.flip();
+            drawBaseVertices.flip();
+            drawOffsets.position(0).limit(ranges);
+            glMultiDrawElementsBaseVertex(GL_TRIANGLES, drawCounts, GL_UNSIGNED_INT, drawOffsets, drawBaseVertices);
+            drawOffsets.clear();
         }
+        drawCalls++;
+        drawCounts.clear();
+        drawBaseVertices.clear();
+    }
 
-        if (lastExtra != null) lastExtra.accept(false);
+    private void growDrawRanges() {
+        final int ranges = drawCounts.position();
+        final int capacity = drawCounts.capacity() * 2;
+        drawCounts = MemoryUtil.memRealloc(drawCounts, capacity).position(ranges);
+        drawBaseVertices = MemoryUtil.memRealloc(drawBaseVertices, capacity).position(ranges);
+        drawOffsets = MemoryUtil.memRealloc(drawOffsets, capacity).clear();
+        MemoryUtil.memSet(drawOffsets, 0);
+    }
 
-        glBindVertexArray(0);
-        glUseProgram(0);
+    public ChunkVertexArena getVertexArena() {
+        return vertexArena;
+    }
+
+    /**
+     * @return draw calls issued since the last {@link #resetDrawCalls()}
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * @return vertices submitted since the last {@link #resetDrawCalls()}
+     */
+    public int getVerticesDrawn() {
+        return verticesDrawn;
+    }
+
+    /**
+     * @return vertices left out since the last {@link #resetDrawCalls()} because they face away from the camera
+     */
+    public int getVerticesSkipped() {
+        return verticesSkipped;
+    }
+
+    public void resetDrawCalls() {
+        drawCalls = 0;
+        verticesDrawn = verticesSkipped = 0;
     }
 
     public void dispose() {
         glDeleteProgram(shaderProgram);
+        glDeleteBuffers(quadIndexBuffer);
+        vertexArena.dispose();
+        MemoryUtil.memFree(drawCounts);
+        MemoryUtil.memFree(drawBaseVertices);
+        MemoryUtil.memFree(drawOffsets);
         assetLoader.dispose();
+        meshBuilder.close();
+        meshScheduler.close();
     }
 }
\ No newline at end of file
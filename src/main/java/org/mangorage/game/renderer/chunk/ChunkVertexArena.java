@@ -0,0 +1,137 @@
+package org.mangorage.game.renderer.chunk;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+
+/**
+ * One vertex buffer shared by every chunk mesh, read through a single VAO. Meshes get a range of it from an
+ * {@link ArenaAllocator} and draw with a base vertex pointing at their range.
+ * <p>
+ * Space is handed out in {@link #GRANULE} vertex steps, so slightly different sizes of the same section can reuse
+ * each other's gaps. When nothing fits the buffer doubles, the old contents are copied over on the GPU.
+ * Render thread only.
+ */
+public final class ChunkVertexArena {
+    public static final int GRANULE = 64; // Vertices
+
+    private final int vao;
+    private int vbo;
+    private final int indexBuffer;
+    private final ArenaAllocator allocator;
+
+    /**
+     * @param indexBuffer element buffer the VAO draws with
+     */
+    public ChunkVertexArena(int initialVertices, int indexBuffer) {
+        this.indexBuffer = indexBuffer;
+        this.allocator = new ArenaAllocator(roundUp(initialVertices) / GRANULE);
+        this.vao = glGenVertexArrays();
+        this.vbo = createBuffer(allocator.getCapacity());
+        bindAttributes();
+    }
+
+    /**
+     * Copies the vertices into a free range.
+     *
+     * @return the first vertex of the range
+     */
+    public int allocate(ByteBuffer vertices, int vertexCount) {
+        final int granules = roundUp(vertexCount) / GRANULE;
+        int offset = allocator.allocate(granules);
+        while (offset == -1) {
+            grow(Math.max(allocator.getCapacity() * 2, allocator.getCapacity() + granules));
+            offset = allocator.allocate(granules);
+        }
+
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferSubData(GL_ARRAY_BUFFER, (long) offset * GRANULE * VertexBuilder.BYTES_PER_VERTEX, vertices);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        return offset * GRANULE;
+    }
+
+    /**
+     * @param firstVertex what {@link #allocate} returned
+     */
+    public void free(int firstVertex) {
+        allocator.free(firstVertex / GRANULE);
+    }
+
+    public int getVao() {
+        return vao;
+    }
+
+    public long getCapacityBytes() {
+        return (long) allocator.getCapacity() * GRANULE * VertexBuilder.BYTES_PER_VERTEX;
+    }
+
+    public long getUsedBytes() {
+        return (long) allocator.getUsed() * GRANULE * VertexBuilder.BYTES_PER_VERTEX;
+    }
+
+    public int getAllocationCount() {
+        return allocator.getAllocationCount();
+    }
+
+    public int getFreeBlockCount() {
+        return allocator.getFreeBlockCount();
+    }
+
+    /**
+     * @see ArenaAllocator#getFragmentation()
+     */
+    public float getFragmentation() {
+        return allocator.getFragmentation();
+    }
+
+    public void dispose() {
+        glDeleteVertexArrays(vao);
+        glDeleteBuffers(vbo);
+    }
+
+    private void grow(int granules) {
+        final int newVbo = createBuffer(granules);
+        glBindBuffer(GL_COPY_READ_BUFFER, vbo);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, newVbo);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, 0, getCapacityBytes());
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+
+        glDeleteBuffers(vbo);
+        vbo = newVbo;
+        allocator.grow(granules);
+        bindAttributes();
+    }
+
+    private static int createBuffer(int granules) {
+        final int buffer = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, buffer);
+        glBufferData(GL_ARRAY_BUFFER, (long) granules * GRANULE * VertexBuilder.BYTES_PER_VERTEX, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        return buffer;
+    }
+
+    private void bindAttributes() {
+        glBindVertexArray(vao);
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexBuffer); // Stays part of the VAO
+
+        // The whole vertex is one packed attribute, unpacked by the vertex shader
+        glVertexAttribIPointer(0, 4, GL_UNSIGNED_SHORT, VertexBuilder.BYTES_PER_VERTEX, 0);
+        glEnableVertexAttribArray(0);
+
+        glBindVertexArray(0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * @return the vertex count rounded up to whole granules, at least one
+     */
+    static int roundUp(int vertices) {
+        return Math.max(GRANULE, (vertices + GRANULE - 1) / GRANULE * GRANULE);
+    }
+}
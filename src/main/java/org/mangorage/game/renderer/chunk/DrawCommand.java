@@ -1,5 +1,22 @@
 package org.mangorage.game.renderer.chunk;
 
+import org.mangorage.game.core.Direction;
+
 import java.util.function.Consumer;
 
-public record DrawCommand(int textureId, int startIndex, int vertexCount, float[] tint, Consumer<Boolean> extra) { }
+/**
+ * A range of whole quads in a mesh that share a material and, unless {@code face} is null, all point the same way.
+ * {@code plane} is the face plane nearest to being behind the camera, the lowest one for faces pointing along an
+ * axis and the highest for faces pointing against it.
+ */
+public record DrawCommand(int startIndex, int vertexCount, Consumer<Boolean> extra, Direction face, float plane) {
+    /**
+     * @return false if a camera at this position, in mesh space, sees every face of the range from behind
+     */
+    public boolean isFacing(float x, float y, float z) {
+        if (face == null) return true;
+        if (face.x != 0) return (x - plane) * face.x > 0;
+        if (face.y != 0) return (y - plane) * face.y > 0;
+        return (z - plane) * face.z > 0;
+    }
+}
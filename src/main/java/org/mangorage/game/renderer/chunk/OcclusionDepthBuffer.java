@@ -0,0 +1,289 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+
+/**
+ * Low resolution depth buffer that occluder boxes are rasterized into on the CPU, with a pyramid of mip levels
+ * for testing bounding boxes against it. Touches no GL, so it works the same without a window.
+ * <p>
+ * Depth is stored as {@code 1 / w}, larger is nearer and 0 means nothing was drawn there. Each mip texel keeps the
+ * farthest depth of the four below it, so a box is hidden when every texel it covers holds something nearer than
+ * the nearest point of the box.
+ * <p>
+ * Use it as {@link #begin}, any number of {@link #drawBox}, {@link #finish}, then {@link #testBox}.
+ */
+public final class OcclusionDepthBuffer {
+    public static final int WIDTH = 128, HEIGHT = 64;
+
+    private static final float NEAR = 0.1f; // Near plane of the world projection
+    private static final float DEPTH_BIAS = 1.001f; // Occluders have to be this much nearer, faces lying on an occluder stay visible
+    private static final int MAX_TEST_TEXELS = 4; // Per side, picks the mip level a box is tested at
+
+    private final float[][] levels;
+    private final int[] levelWidth, levelHeight;
+
+    private final Matrix4f viewProjection = new Matrix4f();
+    private final Vector3f camera = new Vector3f();
+    private float m00, m01, m03, m10, m11, m13, m20, m21, m23, m30, m31, m33; // Rows of projection * view that give x, y and w
+
+    // Face being drawn, in clip space, before and after clipping against the near plane
+    private final float[] faceX = new float[4], faceY = new float[4], faceW = new float[4];
+    private final float[] clipX = new float[5], clipY = new float[5], clipW = new float[5];
+    private final float[] screenX = new float[5], screenY = new float[5], screenDepth = new float[5];
+    private final float[] edgeStepX = new float[5], edgeStepY = new float[5], edgeCorner = new float[5], edgeWeight = new float[5];
+
+    private int boxesDrawn, boxesTested, boxesHidden;
+
+    public OcclusionDepthBuffer() {
+        int count = 1;
+        while ((WIDTH >> count) > 0 || (HEIGHT >> count) > 0) count++;
+
+        levels = new float[count][];
+        levelWidth = new int[count];
+        levelHeight = new int[count];
+        for (int level = 0; level < count; level++) {
+            levelWidth[level] = Math.max(1, WIDTH >> level);
+            levelHeight[level] = Math.max(1, HEIGHT >> level);
+            levels[level] = new float[levelWidth[level] * levelHeight[level]];
+        }
+    }
+
+    /**
+     * Clears the buffer for a new frame.
+     */
+    public void begin(Matrix4f projection, Matrix4f view, Vector3f cameraPos) {
+        projection.mul(view, viewProjection);
+        m00 = viewProjection.m00(); m10 = viewProjection.m10(); m20 = viewProjection.m20(); m30 = viewProjection.m30();
+        m01 = viewProjection.m01(); m11 = viewProjection.m11(); m21 = viewProjection.m21(); m31 = viewProjection.m31();
+        m03 = viewProjection.m03(); m13 = viewProjection.m13(); m23 = viewProjection.m23(); m33 = viewProjection.m33();
+        camera.set(cameraPos);
+
+        Arrays.fill(levels[0], 0);
+        boxesDrawn = boxesTested = boxesHidden = 0;
+    }
+
+    /**
+     * Draws a box that is solid all the way through. Only the faces turned towards the camera are rasterized.
+     */
+    public void drawBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        boxesDrawn++;
+        if (camera.x < minX) drawFace(minX, minY, minZ, minX, maxY, minZ, minX, maxY, maxZ, minX, minY, maxZ);
+        if (camera.x > maxX) drawFace(maxX, minY, minZ, maxX, maxY, minZ, maxX, maxY, maxZ, maxX, minY, maxZ);
+        if (camera.y < minY) drawFace(minX, minY, minZ, maxX, minY, minZ, maxX, minY, maxZ, minX, minY, maxZ);
+        if (camera.y > maxY) drawFace(minX, maxY, minZ, maxX, maxY, minZ, maxX, maxY, maxZ, minX, maxY, maxZ);
+        if (camera.z < minZ) drawFace(minX, minY, minZ, maxX, minY, minZ, maxX, maxY, minZ, minX, maxY, minZ);
+        if (camera.z > maxZ) drawFace(minX, minY, maxZ, maxX, minY, maxZ, maxX, maxY, maxZ, minX, maxY, maxZ);
+    }
+
+    /**
+     * Builds the mip pyramid from what was drawn, call once before testing.
+     */
+    public void finish() {
+        for (int level = 1; level < levels.length; level++) {
+            final float[] source = levels[level - 1];
+            final float[] target = levels[level];
+            final int sourceWidth = levelWidth[level - 1], sourceHeight = levelHeight[level - 1];
+            final int width = levelWidth[level], height = levelHeight[level];
+
+            for (int y = 0; y < height; y++) {
+                final int y0 = Math.min(y * 2, sourceHeight - 1) * sourceWidth;
+                final int y1 = Math.min(y * 2 + 1, sourceHeight - 1) * sourceWidth;
+                for (int x = 0; x < width; x++) {
+                    final int x0 = Math.min(x * 2, sourceWidth - 1);
+                    final int x1 = Math.min(x * 2 + 1, sourceWidth - 1);
+                    target[y * width + x] = Math.min(
+                            Math.min(source[y0 + x0], source[y0 + x1]),
+                            Math.min(source[y1 + x0], source[y1 + x1])
+                    );
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if everything drawn so far hides the box completely
+     */
+    public boolean testBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        boxesTested++;
+        float left = Float.POSITIVE_INFINITY, right = Float.NEGATIVE_INFINITY;
+        float bottom = Float.POSITIVE_INFINITY, top = Float.NEGATIVE_INFINITY;
+        float nearest = 0;
+        for (int corner = 0; corner < 8; corner++) {
+            final float x = (corner & 1) == 0 ? minX : maxX;
+            final float y = (corner & 2) == 0 ? minY : maxY;
+            final float z = (corner & 4) == 0 ? minZ : maxZ;
+            final float w = m03 * x + m13 * y + m23 * z + m33;
+            if (w < NEAR) return true; // Reaches past the near plane, the camera might be inside
+
+            final float sx = toScreen(m00 * x + m10 * y + m20 * z + m30, w, WIDTH);
+            final float sy = toScreen(m01 * x + m11 * y + m21 * z + m31, w, HEIGHT);
+            left = Math.min(left, sx);
+            right = Math.max(right, sx);
+            bottom = Math.min(bottom, sy);
+            top = Math.max(top, sy);
+            nearest = Math.max(nearest, 1 / w);
+        }
+
+        final int x0 = Math.max(0, (int) Math.floor(left)), x1 = Math.min(WIDTH - 1, (int) Math.floor(right));
+        final int y0 = Math.max(0, (int) Math.floor(bottom)), y1 = Math.min(HEIGHT - 1, (int) Math.floor(top));
+        if (x0 > x1 || y0 > y1) return true; // Off screen, left to the frustum test
+
+        final int level = getTestLevel(x0, y0, x1, y1);
+        final float[] depth = levels[level];
+        final int width = levelWidth[level];
+        final float threshold = nearest * DEPTH_BIAS;
+        for (int y = y0 >> level; y <= y1 >> level; y++) {
+            for (int x = x0 >> level; x <= x1 >> level; x++) {
+                if (depth[y * width + x] <= threshold) return true;
+            }
+        }
+        boxesHidden++;
+        return false;
+    }
+
+    /**
+     * @return the first mip level where texels {@code x0..x1}, {@code y0..y1} of level 0 span fewer than
+     * {@link #MAX_TEST_TEXELS} texels per side
+     */
+    int getTestLevel(int x0, int y0, int x1, int y1) {
+        int level = 0;
+        while (level < levels.length - 1 && ((x1 >> level) - (x0 >> level) >= MAX_TEST_TEXELS || (y1 >> level) - (y0 >> level) >= MAX_TEST_TEXELS))
+            level++;
+        return level;
+    }
+
+    public int getBoxesDrawn() {
+        return boxesDrawn;
+    }
+
+    public int getBoxesTested() {
+        return boxesTested;
+    }
+
+    public int getBoxesHidden() {
+        return boxesHidden;
+    }
+
+    private static float toScreen(float clip, float w, int size) {
+        return (clip / w * 0.5f + 0.5f) * size;
+    }
+
+    private void drawFace(float ax, float ay, float az, float bx, float by, float bz,
+                          float cx, float cy, float cz, float dx, float dy, float dz) {
+        setFaceVertex(0, ax, ay, az);
+        setFaceVertex(1, bx, by, bz);
+        setFaceVertex(2, cx, cy, cz);
+        setFaceVertex(3, dx, dy, dz);
+
+        // Clip against the near plane, what is left is a convex polygon of up to five vertices
+        int count = 0;
+        for (int i = 0; i < 4; i++) {
+            final int j = (i + 1) & 3;
+            final boolean inside = faceW[i] >= NEAR;
+            if (inside) {
+                clipX[count] = faceX[i];
+                clipY[count] = faceY[i];
+                clipW[count++] = faceW[i];
+            }
+            if (inside != faceW[j] >= NEAR) {
+                final float t = (NEAR - faceW[i]) / (faceW[j] - faceW[i]);
+                clipX[count] = faceX[i] + (faceX[j] - faceX[i]) * t;
+                clipY[count] = faceY[i] + (faceY[j] - faceY[i]) * t;
+                clipW[count++] = NEAR;
+            }
+        }
+        if (count < 3) return;
+
+        for (int i = 0; i < count; i++) {
+            screenX[i] = toScreen(clipX[i], clipW[i], WIDTH);
+            screenY[i] = toScreen(clipY[i], clipW[i], HEIGHT);
+            screenDepth[i] = 1 / clipW[i];
+        }
+        drawPolygon(count);
+    }
+
+    private void setFaceVertex(int i, float x, float y, float z) {
+        faceX[i] = m00 * x + m10 * y + m20 * z + m30;
+        faceY[i] = m01 * x + m11 * y + m21 * z + m31;
+        faceW[i] = m03 * x + m13 * y + m23 * z + m33;
+    }
+
+    /**
+     * Fills the texels the clipped face covers completely, each with the farthest depth the face has inside it.
+     * Texels the face only partly covers are left alone, so nothing that shows past the silhouette of an occluder
+     * gets hidden. {@code 1 / w} is linear in screen space, so it is interpolated directly.
+     */
+    private void drawPolygon(int count) {
+        float area = 0; // Twice the signed area
+        float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            final int j = i + 1 == count ? 0 : i + 1;
+            area += screenX[i] * screenY[j] - screenX[j] * screenY[i];
+            minX = Math.min(minX, screenX[i]);
+            maxX = Math.max(maxX, screenX[i]);
+            minY = Math.min(minY, screenY[i]);
+            maxY = Math.max(maxY, screenY[i]);
+        }
+        if (Math.abs(area) < 1e-6f) return;
+
+        // Texel x covers x to x + 1, only ones completely inside the bounds can be covered
+        final int x0 = Math.max(0, (int) Math.ceil(minX)), x1 = Math.min(WIDTH, (int) Math.floor(maxX)) - 1;
+        final int y0 = Math.max(0, (int) Math.ceil(minY)), y1 = Math.min(HEIGHT, (int) Math.floor(maxY)) - 1;
+        if (x0 > x1 || y0 > y1) return;
+
+        // Edge functions are positive inside, each is evaluated at the corner of the texel where it is smallest
+        final float winding = area > 0 ? 1 : -1;
+        for (int i = 0; i < count; i++) {
+            final int j = i + 1 == count ? 0 : i + 1;
+            edgeStepX[i] = winding * (screenY[i] - screenY[j]);
+            edgeStepY[i] = winding * (screenX[j] - screenX[i]);
+            edgeCorner[i] = Math.min(0, edgeStepX[i]) + Math.min(0, edgeStepY[i]);
+        }
+
+        // Depth plane from the largest triangle of the fan, the face is planar so any would do up to rounding
+        int best = 1;
+        float bestArea = 0;
+        for (int i = 1; i < count - 1; i++) {
+            final float triangle = Math.abs((screenX[i] - screenX[0]) * (screenY[i + 1] - screenY[0]) - (screenX[i + 1] - screenX[0]) * (screenY[i] - screenY[0]));
+            if (triangle > bestArea) {
+                bestArea = triangle;
+                best = i;
+            }
+        }
+        final float ax = screenX[0], ay = screenY[0], depthA = screenDepth[0];
+        final float abX = screenX[best] - ax, abY = screenY[best] - ay, abDepth = screenDepth[best] - depthA;
+        final float acX = screenX[best + 1] - ax, acY = screenY[best + 1] - ay, acDepth = screenDepth[best + 1] - depthA;
+        final float determinant = abX * acY - acX * abY;
+        final float stepDepthX = (abDepth * acY - acDepth * abY) / determinant;
+        final float stepDepthY = (acDepth * abX - abDepth * acX) / determinant;
+        final float depthCorner = Math.min(0, stepDepthX) + Math.min(0, stepDepthY); // Farthest corner of a texel
+
+        final float[] depth = levels[0];
+        for (int y = y0; y <= y1; y++) {
+            // Rows start from the vertices again, accumulating steps down a large face drifts
+            for (int e = 0; e < count; e++) {
+                edgeWeight[e] = edgeStepX[e] * (x0 - screenX[e]) + edgeStepY[e] * (y - screenY[e]) + edgeCorner[e];
+            }
+            float value = depthA + stepDepthX * (x0 - ax) + stepDepthY * (y - ay) + depthCorner;
+
+            boolean entered = false;
+            for (int x = x0, i = y * WIDTH + x0; x <= x1; x++, i++, value += stepDepthX) {
+                boolean inside = true;
+                for (int e = 0; e < count; e++) {
+                    if (edgeWeight[e] < 0) inside = false;
+                    edgeWeight[e] += edgeStepX[e];
+                }
+                if (!inside) {
+                    if (entered) break; // Faces are convex, the rest of the row is outside
+                    continue;
+                }
+                entered = true;
+                if (value > depth[i]) depth[i] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.joml.Vector3f;
+import org.mangorage.game.core.Direction;
+import org.mangorage.game.world.World;
+import org.mangorage.game.world.chunk.Chunk;
+import org.mangorage.game.world.chunk.ChunkSection;
+
+/**
+ * Finds the sections the camera can possibly see into, once per frame.
+ * <p>
+ * Walks breadth first from the camera's section through the loaded chunks in render distance. A section entered
+ * through one face is only left through the faces its {@link SectionVisibility} connects to that one, and the walk
+ * never steps back in a direction opposite to one it already took, so it only moves away from the camera.
+ * Sections behind solid rock are never reached.
+ * <p>
+ * Render thread only. Counts what it rejects until the next {@link #update}.
+ */
+public final class SectionOcclusionCuller {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int NO_FACE = 7;
+
+    private Chunk[] columns = new Chunk[0];
+    private int[] visited = new int[0]; // Frame a section was reached in, indexed like columns times sectionCount
+    private int[] queue = new int[0]; // Section index << 9 | entry face << 6 | directions taken
+    private int frame = 0;
+
+    private boolean active = false; // False when the camera is outside the loaded world, everything counts as visible
+    private int minChunkX, minChunkZ, diameter, sectionCount;
+    private int sectionsReached, sectionsOccluded;
+
+    public void update(World world, Vector3f cameraPos, int renderDistance) {
+        frame++;
+        sectionsReached = sectionsOccluded = 0;
+
+        final int cameraChunkX = Math.floorDiv((int) Math.floor(cameraPos.x), 16);
+        final int cameraChunkZ = Math.floorDiv((int) Math.floor(cameraPos.z), 16);
+        final int cameraSectionY = Math.floorDiv((int) Math.floor(cameraPos.y), ChunkSection.SIZE);
+
+        final Chunk cameraChunk = world.getLoadedChunk(cameraChunkX, cameraChunkZ);
+        active = cameraChunk != null && cameraSectionY >= 0;
+        if (!active) return;
+
+        minChunkX = cameraChunkX - renderDistance;
+        minChunkZ = cameraChunkZ - renderDistance;
+        diameter = renderDistance * 2 + 1;
+        sectionCount = cameraChunk.getSections().length;
+
+        final int total = diameter * diameter * sectionCount;
+        if (columns.length != diameter * diameter) columns = new Chunk[diameter * diameter];
+        if (visited.length < total) {
+            visited = new int[total];
+            queue = new int[total];
+            frame = 1;
+        }
+        for (int dz = 0; dz < diameter; dz++) {
+            for (int dx = 0; dx < diameter; dx++) {
+                columns[dz * diameter + dx] = world.getLoadedChunk(minChunkX + dx, minChunkZ + dz);
+            }
+        }
+
+        int head = 0, tail = 0;
+        if (cameraSectionY < sectionCount) {
+            final int index = (renderDistance * diameter + renderDistance) * sectionCount + cameraSectionY;
+            visited[index] = frame;
+            queue[tail++] = index << 9 | NO_FACE << 6;
+        } else {
+            // Above the world, look down into the top section of every column
+            for (int column = 0; column < columns.length; column++) {
+                if (columns[column] == null) continue;
+                final int index = column * sectionCount + sectionCount - 1;
+                visited[index] = frame;
+                queue[tail++] = index << 9 | Direction.UP.ordinal() << 6 | 1 << Direction.DOWN.ordinal();
+            }
+        }
+
+        while (head < tail) {
+            final int entry = queue[head++];
+            final int index = entry >>> 9;
+            final int entryFace = entry >>> 6 & 7;
+            final int directions = entry & 63;
+            final int column = index / sectionCount;
+            final int sectionY = index % sectionCount;
+            final int columnX = column % diameter;
+            final int columnZ = column / diameter;
+            final long visibility = columns[column].getSections()[sectionY].getVisibility();
+            sectionsReached++;
+
+            for (Direction dir : DIRECTIONS) {
+                if ((directions & 1 << dir.getOpposite().ordinal()) != 0) continue; // Would head back towards the camera
+                if (entryFace != NO_FACE && !SectionVisibility.isConnected(visibility, DIRECTIONS[entryFace], dir)) continue;
+
+                final int nx = columnX + dir.x;
+                final int ny = sectionY + dir.y;
+                final int nz = columnZ + dir.z;
+                if (nx < 0 || nx >= diameter || nz < 0 || nz >= diameter || ny < 0 || ny >= sectionCount) continue;
+
+                final int neighborColumn = nz * diameter + nx;
+                if (columns[neighborColumn] == null) continue;
+                final int neighbor = neighborColumn * sectionCount + ny;
+                if (visited[neighbor] == frame) continue;
+                visited[neighbor] = frame;
+                queue[tail++] = neighbor << 9 | dir.getOpposite().ordinal() << 6 | directions | 1 << dir.ordinal();
+            }
+        }
+    }
+
+    /**
+     * @return false if the section was not reached from the camera. Sections outside the area searched count as visible.
+     */
+    public boolean testSection(int chunkX, int sectionY, int chunkZ) {
+        if (!active) return true;
+        final int dx = chunkX - minChunkX;
+        final int dz = chunkZ - minChunkZ;
+        if (dx < 0 || dx >= diameter || dz < 0 || dz >= diameter || sectionY < 0 || sectionY >= sectionCount) return true;
+
+        boolean visible = visited[(dz * diameter + dx) * sectionCount + sectionY] == frame;
+        if (!visible) sectionsOccluded++;
+        return visible;
+    }
+
+    public int getSectionsReached() {
+        return sectionsReached;
+    }
+
+    public int getSectionsOccluded() {
+        return sectionsOccluded;
+    }
+}
@@ -0,0 +1,94 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.mangorage.game.core.Direction;
+import org.mangorage.game.renderer.block.BlockModels;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Which faces of a section can see each other through it, stored as a 6x6 bit set of {@link Direction} ordinals.
+ * <p>
+ * Cells that are not opaque full cubes are flood filled, every pocket connects all the faces it touches.
+ * A section of solid stone connects nothing, an empty one connects everything.
+ * <p>
+ * Not thread safe, the scratch arrays are reused by every {@link #compute} call.
+ */
+public final class SectionVisibility {
+    public static final long NONE = 0;
+    public static final long ALL = (1L << 36) - 1;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final IntPredicate opaque;
+    private int[] queue = new int[16 * 16 * 16];
+    private boolean[] visited = new boolean[16 * 16 * 16];
+
+    /**
+     * @param opaque internal ids that fully block the view, usually {@link BlockModels#isOpaque}
+     */
+    public SectionVisibility(IntPredicate opaque) {
+        this.opaque = opaque;
+    }
+
+    public static boolean isConnected(long visibility, Direction from, Direction to) {
+        return (visibility & bit(from.ordinal(), to.ordinal())) != 0;
+    }
+
+    private static long bit(int from, int to) {
+        return 1L << (from * 6 + to);
+    }
+
+    /**
+     * @param cells internal ids laid out like {@link ChunkMeshBuilder} unpacks them, x fastest, then z, then y
+     */
+    public long compute(int[] cells, int width, int height, int depth) {
+        final int volume = width * height * depth;
+        if (queue.length < volume) {
+            queue = new int[volume];
+            visited = new boolean[volume];
+        }
+
+        for (int i = 0; i < volume; i++) {
+            visited[i] = opaque.test(cells[i]); // Opaque cells are never entered
+        }
+
+        final int layer = width * depth;
+        long visibility = NONE;
+        for (int start = 0; start < volume && visibility != ALL; start++) {
+            if (visited[start]) continue;
+
+            // Breadth first over one pocket, collecting the faces it touches
+            int faces = 0;
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            visited[start] = true;
+            while (head < tail) {
+                final int cell = queue[head++];
+                final int x = cell % width;
+                final int z = cell / width % depth;
+                final int y = cell / layer;
+
+                if (y == height - 1) faces |= 1 << Direction.UP.ordinal();
+                else if (!visited[cell + layer]) { visited[cell + layer] = true; queue[tail++] = cell + layer; }
+                if (y == 0) faces |= 1 << Direction.DOWN.ordinal();
+                else if (!visited[cell - layer]) { visited[cell - layer] = true; queue[tail++] = cell - layer; }
+                if (z == 0) faces |= 1 << Direction.NORTH.ordinal();
+                else if (!visited[cell - width]) { visited[cell - width] = true; queue[tail++] = cell - width; }
+                if (z == depth - 1) faces |= 1 << Direction.SOUTH.ordinal();
+                else if (!visited[cell + width]) { visited[cell + width] = true; queue[tail++] = cell + width; }
+                if (x == 0) faces |= 1 << Direction.WEST.ordinal();
+                else if (!visited[cell - 1]) { visited[cell - 1] = true; queue[tail++] = cell - 1; }
+                if (x == width - 1) faces |= 1 << Direction.EAST.ordinal();
+                else if (!visited[cell + 1]) { visited[cell + 1] = true; queue[tail++] = cell + 1; }
+            }
+
+            for (Direction from : DIRECTIONS) {
+                if ((faces & 1 << from.ordinal()) == 0) continue;
+                for (Direction to : DIRECTIONS) {
+                    if ((faces & 1 << to.ordinal()) != 0) visibility |= bit(from.ordinal(), to.ordinal());
+                }
+            }
+        }
+        return visibility;
+    }
+}
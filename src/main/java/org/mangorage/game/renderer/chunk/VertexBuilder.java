@@ -0,0 +1,140 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Growable off-heap vertex buffer.
+ * Vertices are written straight into native memory in the layout the chunk shader expects, so a finished mesh
+ * goes to {@code glBufferData} as is. Meant to be reused across meshes: {@link #reset()} keeps the allocation.
+ * <p>
+ * A vertex is packed into 4 unsigned shorts, 8 bytes. The low {@value #POSITION_BITS} bits of the first three hold
+ * x, y and z in 1/{@value #POSITION_SCALE} block steps, the bits above them the shade index, the tint index and the
+ * texture array layer. The last one holds u in the low and v in the high byte in 1/{@value #UV_SCALE} steps.
+ * That covers positions from 0 to 32, plenty for section space, and UVs from 0 to 64 for textures repeating across
+ * greedy meshed faces. Shades and tints are looked up in small palettes by the shader, see {@link #packColor}.
+ */
+public final class VertexBuilder implements AutoCloseable {
+    public static final int POSITION_SCALE = 16;
+    public static final int POSITION_BITS = 9;
+    public static final int UV_SCALE = 4;
+    public static final int BYTES_PER_VERTEX = 4 * Short.BYTES;
+
+    // Whatever is left of each position word
+    public static final int MAX_SHADES = 1 << 3;
+    public static final int MAX_TINTS = 1 << 4;
+    public static final int MAX_LAYERS = 1 << 7;
+
+    private static final int SHADE_BITS = 3;
+
+    private ByteBuffer buffer;
+    private int vertexCount = 0;
+
+    // Bounds of every position written since the last reset
+    private float minX, minY, minZ, maxX, maxY, maxZ;
+
+    public VertexBuilder() {
+        this(4096);
+    }
+
+    public VertexBuilder(int initialVertices) {
+        this.buffer = MemoryUtil.memAlloc(initialVertices * BYTES_PER_VERTEX);
+        reset();
+    }
+
+    /**
+     * @param color packed by {@link #packColor}
+     * @param layer texture array layer, below {@link #MAX_LAYERS}
+     */
+    public VertexBuilder vertex(float x, float y, float z, float u, float v, int color, int layer) {
+        int offset = vertexCount * BYTES_PER_VERTEX;
+        if (offset + BYTES_PER_VERTEX > buffer.capacity())
+            buffer = MemoryUtil.memRealloc(buffer, buffer.capacity() * 2);
+
+        buffer.putShort(offset, (short) (Math.round(x * POSITION_SCALE) | (color & (MAX_SHADES - 1)) << POSITION_BITS));
+        buffer.putShort(offset + 2, (short) (Math.round(y * POSITION_SCALE) | (color >>> SHADE_BITS) << POSITION_BITS));
+        buffer.putShort(offset + 4, (short) (Math.round(z * POSITION_SCALE) | layer << POSITION_BITS));
+        buffer.putShort(offset + 6, (short) (Math.round(u * UV_SCALE) | Math.round(v * UV_SCALE) << 8));
+        vertexCount++;
+
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        minZ = Math.min(minZ, z);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+        maxZ = Math.max(maxZ, z);
+        return this;
+    }
+
+    /**
+     * Appends a range of vertices from another builder. The bounds grow by all of the source's bounds, not just the range.
+     */
+    public VertexBuilder put(VertexBuilder source, int firstVertex, int count) {
+        int offset = vertexCount * BYTES_PER_VERTEX;
+        int bytes = count * BYTES_PER_VERTEX;
+        if (offset + bytes > buffer.capacity())
+            buffer = MemoryUtil.memRealloc(buffer, Math.max(buffer.capacity() * 2, offset + bytes));
+
+        MemoryUtil.memCopy(
+                MemoryUtil.memAddress(source.buffer, firstVertex * BYTES_PER_VERTEX),
+                MemoryUtil.memAddress(buffer, offset),
+                bytes
+        );
+        vertexCount += count;
+
+        minX = Math.min(minX, source.minX);
+        minY = Math.min(minY, source.minY);
+        minZ = Math.min(minZ, source.minZ);
+        maxX = Math.max(maxX, source.maxX);
+        maxY = Math.max(maxY, source.maxY);
+        maxZ = Math.max(maxZ, source.maxZ);
+        return this;
+    }
+
+    /**
+     * Packs the colour {@link #vertex} takes: a face shade and a tint, both as indices into the palettes the chunk
+     * shader is given.
+     *
+     * @param shade below {@link #MAX_SHADES}
+     * @param tint  below {@link #MAX_TINTS}
+     */
+    public static int packColor(int shade, int tint) {
+        return shade | tint << SHADE_BITS;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public boolean isEmpty() {
+        return vertexCount == 0;
+    }
+
+    /**
+     * View over the vertices written so far, valid until the next write or {@link #reset()}.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.slice(0, vertexCount * BYTES_PER_VERTEX).order(buffer.order());
+    }
+
+    /**
+     * @return min x, y, z and max x, y, z of the vertices written so far, or null when there are none
+     */
+    public float[] getBounds() {
+        if (vertexCount == 0) return null;
+        return new float[] {minX, minY, minZ, maxX, maxY, maxZ};
+    }
+
+    public void reset() {
+        vertexCount = 0;
+        minX = minY = minZ = Float.POSITIVE_INFINITY;
+        maxX = maxY = maxZ = Float.NEGATIVE_INFINITY;
+    }
+
+    @Override
+    public void close() {
+        MemoryUtil.memFree(buffer);
+        buffer = null;
+    }
+}
@@ -1,8 +1,16 @@
 package org.mangorage.game.util;
 
 import org.mangorage.game.block.Block;
+import org.mangorage.game.core.BuiltInRegistries;
 
+/**
+ * Primitive coordinate block access. Implementations should not allocate per lookup.
+ */
 @FunctionalInterface
 public interface BlockGetter {
-    Block getBlock(int x, int y, int z);
+    int getBlockId(int x, int y, int z);
+
+    default Block getBlock(int x, int y, int z) {
+        return BuiltInRegistries.BLOCK_REGISTRY.getByInternalId(getBlockId(x, y, z));
+    }
 }
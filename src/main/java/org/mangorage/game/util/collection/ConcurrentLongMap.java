@@ -0,0 +1,214 @@
+package org.mangorage.game.util.collection;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Open addressing hash map keyed by primitive longs.
+ * Reads never lock or allocate; writers serialize on the map itself.
+ * <p>
+ * A slot's key is written once per table and never changes afterwards, removed entries leave a tombstone
+ * behind until the next rehash. That keeps a reader from ever pairing a key with another key's value.
+ */
+public final class ConcurrentLongMap<V> {
+    private static final Object TOMBSTONE = new Object();
+    private static final float LOAD_FACTOR = 0.5f;
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    @FunctionalInterface
+    public interface EntryPredicate<V> {
+        boolean test(long key, V value);
+    }
+
+    private static final class Table {
+        final long[] keys;
+        final AtomicReferenceArray<Object> values;
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+    }
+
+    private volatile Table table;
+    private int size = 0;
+    private int used = 0; // Live entries + tombstones
+
+    public ConcurrentLongMap() {
+        this(64);
+    }
+
+    public ConcurrentLongMap(int initialCapacity) {
+        this.table = new Table(Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1));
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        final Table t = table;
+        int i = hash(key) & t.mask;
+        while (true) {
+            Object value = t.values.get(i);
+            if (value == null) return null;
+            if (t.keys[i] == key) return value == TOMBSTONE ? null : (V) value;
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public V computeIfAbsent(long key, LongFunction<? extends V> function) {
+        V value = get(key);
+        if (value != null) return value;
+        synchronized (this) {
+            value = get(key);
+            if (value != null) return value;
+            value = function.apply(key);
+            if (value != null) put(key, value);
+            return value;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized V put(long key, V value) {
+        if (value == null) throw new NullPointerException("Null values are not supported");
+
+        Table t = table;
+        int i = hash(key) & t.mask;
+        while (true) {
+            Object existing = t.values.get(i);
+            if (existing == null) break;
+            if (t.keys[i] == key) {
+                t.values.set(i, value);
+                if (existing == TOMBSTONE) {
+                    size++;
+                    return null;
+                }
+                return (V) existing;
+            }
+            i = (i + 1) & t.mask;
+        }
+
+        if (used + 1 > t.keys.length * LOAD_FACTOR) {
+            rehash(size + 1 > t.keys.length * LOAD_FACTOR / 2 ? t.keys.length << 1 : t.keys.length);
+            t = table;
+            i = hash(key) & t.mask;
+            while (t.values.get(i) != null) i = (i + 1) & t.mask;
+        }
+
+        t.keys[i] = key;
+        t.values.set(i, value); // Publishes the key written above
+        size++;
+        used++;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(long key) {
+        final Table t = table;
+        int i = hash(key) & t.mask;
+        while (true) {
+            Object existing = t.values.get(i);
+            if (existing == null) return null;
+            if (t.keys[i] == key) {
+                if (existing == TOMBSTONE) return null;
+                t.values.set(i, TOMBSTONE);
+                size--;
+                return (V) existing;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    /**
+     * Removes the entry only if it is still mapped to {@code expected} (compared by identity).
+     */
+    public synchronized boolean remove(long key, V expected) {
+        final Table t = table;
+        int i = hash(key) & t.mask;
+        while (true) {
+            Object existing = t.values.get(i);
+            if (existing == null) return false;
+            if (t.keys[i] == key) {
+                if (existing != expected) return false;
+                t.values.set(i, TOMBSTONE);
+                size--;
+                return true;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    /**
+     * Removes every entry matching the predicate. The predicate runs while the write lock is held.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void removeIf(EntryPredicate<? super V> predicate) {
+        final Table t = table;
+        for (int i = 0; i < t.keys.length; i++) {
+            Object value = t.values.get(i);
+            if (value == null || value == TOMBSTONE) continue;
+            if (predicate.test(t.keys[i], (V) value)) {
+                t.values.set(i, TOMBSTONE);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Weakly consistent iteration over a snapshot of the current table.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> consumer) {
+        final Table t = table;
+        for (int i = 0; i < t.keys.length; i++) {
+            Object value = t.values.get(i);
+            if (value == null || value == TOMBSTONE) continue;
+            consumer.accept(t.keys[i], (V) value);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    synchronized int getCapacity() {
+        return table.keys.length;
+    }
+
+    /**
+     * @return live entries plus tombstones
+     */
+    synchronized int getUsedSlots() {
+        return used;
+    }
+
+    private void rehash(int capacity) {
+        final Table old = table;
+        final Table t = new Table(capacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            Object value = old.values.get(i);
+            if (value == null || value == TOMBSTONE) continue;
+            int j = hash(old.keys[i]) & t.mask;
+            while (t.values.get(j) != null) j = (j + 1) & t.mask;
+            t.keys[j] = old.keys[i];
+            t.values.lazySet(j, value);
+        }
+        used = size;
+        table = t; // Volatile write publishes the whole table
+    }
+}
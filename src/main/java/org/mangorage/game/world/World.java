@@ -6,105 +6,243 @@ import org.joml.Matrix4f;
 import org.joml.Vector3f;
 import org.mangorage.game.block.Block;
 import org.mangorage.game.core.BuiltInRegistries;
-import org.mangorage.game.core.Direction;
+import org.mangorage.game.renderer.chunk.ChunkCulling;
+import org.mangorage.game.renderer.chunk.ChunkRenderer;
+import org.mangorage.game.util.BlockGetter;
+import org.mangorage.game.util.collection.ConcurrentLongMap;
 import org.mangorage.game.world.chunk.Chunk;
 import org.mangorage.game.world.chunk.ChunkPos;
+import org.mangorage.game.world.storage.ChunkSaveQueue;
+import org.mangorage.game.world.storage.ChunkSerializer;
+import org.mangorage.game.world.storage.CompressedChunkCache;
+import org.mangorage.game.world.storage.LegacyChunkConverter;
+import org.mangorage.game.world.storage.RegionStorage;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.function.LongFunction;
+
+public final class World implements BlockGetter {
+    private static final int RENDER_DISTANCE = 4;
+    private static final int MAX_CHUNK_UPLOADS_PER_FRAME = 2;
+    private static final Path WORLD_FOLDER = Path.of("world");
+    private static final long EVICTED_CHUNK_CACHE_BYTES = 32L * 1024 * 1024;
+
+    private final ConcurrentLongMap<Chunk> chunks = new ConcurrentLongMap<>();
+    private final RegionStorage regionStorage = new RegionStorage(WORLD_FOLDER.resolve("region"));
+    private final ChunkSaveQueue saveQueue = new ChunkSaveQueue(regionStorage);
+    private final CompressedChunkCache evictedChunks = new CompressedChunkCache(EVICTED_CHUNK_CACHE_BYTES);
+
+    // Chunk loading/generation runs off the render thread, finished chunks come back through readyChunks
+    private final ExecutorService chunkWorkers = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Chunk Worker-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }
+    );
+    private final ConcurrentLongMap<CompletableFuture<Chunk>> pendingChunks = new ConcurrentLongMap<>();
+    private final Queue<Chunk> readyChunks = new ConcurrentLinkedQueue<>();
+    private final LongFunction<CompletableFuture<Chunk>> chunkRequester = key -> CompletableFuture
+            .supplyAsync(() -> loadChunk(ChunkPos.fromLong(key)), chunkWorkers)
+            .whenComplete((chunk, error) -> {
+                if (error != null) {
+                    // Left in pendingChunks so a broken chunk isn't retried every frame, clearUnusedChunks drops it
+                    System.err.println("Failed to load chunk at " + ChunkPos.fromLong(key));
+                    error.printStackTrace();
+                } else {
+                    readyChunks.add(chunk);
+                }
+            });
 
-import java.util.EnumMap;
-import java.util.Map;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
+    private volatile Chunk lastChunk = null;
+    private int cameraChunkX, cameraChunkZ; // Chunk the camera was in on the last render or cleanup
 
-public final class World {
-    private static final int RENDER_DISTANCE = 4;
+    private final ChunkCulling culling = new ChunkCulling();
+    private IntPredicate opaqueBlocks = null; // Bound on the first frame, the block models need the GL context
 
-    private final Map<ChunkPos, Chunk> chunks = new ConcurrentHashMap<>();
+    public World() {
+        try {
+            int converted = LegacyChunkConverter.convert(WORLD_FOLDER, regionStorage);
+            if (converted > 0) System.out.println("Converted " + converted + " legacy chunk files to region files");
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to convert legacy chunk files", e);
+        }
+    }
 
     public Chunk getLoadedChunk(ChunkPos chunkPos) {
-        return chunks.get(chunkPos);
+        return chunks.get(chunkPos.toLong());
     }
 
-    public Chunk getChunk(ChunkPos chunkPos) {
-        return chunks.computeIfAbsent(chunkPos, this::loadChunk);
+    public Chunk getLoadedChunk(int chunkX, int chunkZ) {
+        return chunks.get(ChunkPos.asLong(chunkX, chunkZ));
     }
 
+    /**
+     * Schedules the chunk to be loaded or generated on a worker. Repeated requests for a chunk that is
+     * already in flight share the same future. The chunk joins the loaded set once the render thread
+     * picks it up in {@link #render}.
+     */
+    public CompletableFuture<Chunk> requestChunk(int chunkX, int chunkZ) {
+        return pendingChunks.computeIfAbsent(ChunkPos.asLong(chunkX, chunkZ), chunkRequester);
+    }
+
+    /**
+     * Moves chunks finished by the workers into the loaded set and queues their meshes.
+     * Bounded per frame so a burst of arrivals doesn't stall a single frame. Chunks the camera
+     * moved away from while they were loading are dropped instead, clearUnusedChunks would only
+     * unload them again.
+     */
+    private void acceptReadyChunks() {
+        int accepted = 0;
+        while (accepted < MAX_CHUNK_UPLOADS_PER_FRAME) {
+            Chunk chunk = readyChunks.poll();
+            if (chunk == null) return;
+
+            final long key = chunk.getChunkPos().toLong();
+            pendingChunks.remove(key);
+            if (!isInRenderDistance(chunk.getChunkPos())) {
+                releaseChunk(chunk);
+                continue;
+            }
+
+            chunks.put(key, chunk);
+            chunk.updateMesh();
+            accepted++;
+
+            // Border faces of the neighbours that were meshed against nothing may be hidden now
+            final int chunkX = chunk.getChunkPos().x();
+            final int chunkZ = chunk.getChunkPos().z();
+            markAllDirty(chunkX - 1, chunkZ);
+            markAllDirty(chunkX + 1, chunkZ);
+            markAllDirty(chunkX, chunkZ - 1);
+            markAllDirty(chunkX, chunkZ + 1);
+        }
+    }
+
+    /**
+     * Chunk containing the block, only if it is loaded. Never loads or waits for one, use {@link #requestChunk} for that.
+     *
+     * @return the chunk, or null while it isn't loaded
+     */
     public Chunk getChunk(BlockPos blockPos) {
-        int chunkX = Math.floorDiv(blockPos.x(), 16);
-        int chunkZ = Math.floorDiv(blockPos.z(), 16);
-        return getChunk(new ChunkPos(chunkX, chunkZ));
+        return getChunkAt(blockPos.x(), blockPos.z());
     }
 
-    public void setBlock(Block block, BlockPos blockPos, BlockAction blockAction) {
-        Chunk chunk = getChunk(blockPos);
+    /**
+     * Chunk containing the given block coordinates. Repeated lookups in the same chunk hit a
+     * one entry cache instead of the chunk map.
+     */
+    private Chunk getChunkAt(int x, int z) {
+        final int chunkX = x >> 4;
+        final int chunkZ = z >> 4;
+
+        final Chunk cached = lastChunk;
+        if (cached != null && cached.getChunkPos().x() == chunkX && cached.getChunkPos().z() == chunkZ)
+            return cached;
+
+        final Chunk chunk = getLoadedChunk(chunkX, chunkZ);
+        if (chunk != null) lastChunk = chunk;
+        return chunk;
+    }
+
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        Chunk chunk = getChunkAt(x, z);
+        if (chunk == null) return BuiltInRegistries.BLOCK_REGISTRY.getDefaultInternalId();
+        return chunk.getBlockId(x & 15, y, z & 15);
+    }
+
+    public void setBlockId(int x, int y, int z, int id, BlockAction blockAction) {
+        Chunk chunk = getChunkAt(x, z);
         if (chunk == null) return;
-        BlockPos localPos = new BlockPos(
-                Math.floorMod(blockPos.x(), 16),
-                blockPos.y(),
-                Math.floorMod(blockPos.z(), 16)
-        );
-        chunk.setBlock(block, localPos, blockAction);
+
+        final int localX = x & 15;
+        final int localZ = z & 15;
+        if (!chunk.setBlockId(localX, y, localZ, id, blockAction)) return;
+
+        // Edits on the chunk border can reveal or hide faces of the adjacent chunk
+        final int chunkX = x >> 4;
+        final int chunkZ = z >> 4;
+        if (localX == 0) markDirty(chunkX - 1, chunkZ, y);
+        if (localX == 15) markDirty(chunkX + 1, chunkZ, y);
+        if (localZ == 0) markDirty(chunkX, chunkZ - 1, y);
+        if (localZ == 15) markDirty(chunkX, chunkZ + 1, y);
+    }
+
+    public void setBlock(Block block, BlockPos blockPos, BlockAction blockAction) {
+        final int id = block == null ? BuiltInRegistries.BLOCK_REGISTRY.getDefaultInternalId() : BuiltInRegistries.BLOCK_REGISTRY.getInternalId(block);
+        setBlockId(blockPos.x(), blockPos.y(), blockPos.z(), id, blockAction);
+    }
+
+    private void markDirty(int chunkX, int chunkZ, int y) {
+        Chunk chunk = getLoadedChunk(chunkX, chunkZ);
+        if (chunk != null) chunk.markDirty(y);
+    }
+
+    private void markAllDirty(int chunkX, int chunkZ) {
+        Chunk chunk = getLoadedChunk(chunkX, chunkZ);
+        if (chunk != null) chunk.markAllDirty();
     }
 
     public Block getBlock(BlockPos blockPos) {
-        Chunk chunk = getChunk(blockPos);
-        if (chunk == null) return BuiltInRegistries.AIR_BLOCK;
-        BlockPos localPos = new BlockPos(
-                Math.floorMod(blockPos.x(), 16),
-                blockPos.y(),
-                Math.floorMod(blockPos.z(), 16)
-        );
-        return chunk.getBlock(localPos);
+        return getBlock(blockPos.x(), blockPos.y(), blockPos.z());
     }
 
     public void render(Vector3f cameraPos, Matrix4f view, Matrix4f projection) {
-        chunks.forEach((d, c) -> c.updateMesh());
-        int cameraChunkX = Math.floorDiv((int) cameraPos.x, 16);
-        int cameraChunkZ = Math.floorDiv((int) cameraPos.z, 16);
-
+        cameraChunkX = Math.floorDiv((int) cameraPos.x, 16);
+        cameraChunkZ = Math.floorDiv((int) cameraPos.z, 16);
+        ChunkRenderer.get().resetDrawCalls();
+        acceptReadyChunks();
+        ChunkRenderer.get().uploadBuiltMeshes();
+        chunks.forEach((key, chunk) -> chunk.updateMesh());
+        if (opaqueBlocks == null) opaqueBlocks = ChunkRenderer.get().getBlockModels()::isOpaque;
+        culling.update(this, cameraPos, view, projection, RENDER_DISTANCE, opaqueBlocks);
+
+        ChunkRenderer.get().beginWorldPass(cameraPos);
         for (int dx = -RENDER_DISTANCE; dx <= RENDER_DISTANCE; dx++) {
             for (int dz = -RENDER_DISTANCE; dz <= RENDER_DISTANCE; dz++) {
                 int chunkX = cameraChunkX + dx;
                 int chunkZ = cameraChunkZ + dz;
-                ChunkPos pos = new ChunkPos(chunkX, chunkZ);
 
-                Chunk chunk = getChunk(pos);
-                if (chunk == null) continue;
-
-                Matrix4f model = new Matrix4f()
-                        .translate(chunkX * 16.0f, 0.0f, chunkZ * 16.0f);
+                Chunk chunk = getLoadedChunk(chunkX, chunkZ);
+                if (chunk == null) {
+                    requestChunk(chunkX, chunkZ);
+                    continue;
+                }
 
-                chunk.render(model, view, projection);
+                if (!culling.testChunk(chunk)) continue;
+                chunk.render(culling);
             }
         }
+        ChunkRenderer.get().endWorldPass(view, projection);
     }
 
-    public void clearUnusedChunks(Vector3f cameraPos) {
-        int cameraChunkX = Math.floorDiv((int) cameraPos.x, 16);
-        int cameraChunkZ = Math.floorDiv((int) cameraPos.z, 16);
-
-        chunks.entrySet().removeIf(entry -> {
-            ChunkPos pos = entry.getKey();
-            Chunk chunk = entry.getValue();
+    private boolean isInRenderDistance(ChunkPos pos) {
+        return Math.abs(pos.x() - cameraChunkX) <= RENDER_DISTANCE && Math.abs(pos.z() - cameraChunkZ) <= RENDER_DISTANCE;
+    }
 
-            int dx = pos.x() - cameraChunkX;
-            int dz = pos.z() - cameraChunkZ;
+    public void clearUnusedChunks(Vector3f cameraPos) {
+        cameraChunkX = Math.floorDiv((int) cameraPos.x, 16);
+        cameraChunkZ = Math.floorDiv((int) cameraPos.z, 16);
 
-            boolean outside = dx < -RENDER_DISTANCE || dx > RENDER_DISTANCE
-                    || dz < -RENDER_DISTANCE || dz > RENDER_DISTANCE;
+        chunks.removeIf((key, chunk) -> {
+            ChunkPos pos = chunk.getChunkPos();
+            boolean outside = !isInRenderDistance(pos);
 
             if (outside) {
                 // YOUR EXTRA LOGIC HERE: e.g. save chunk data, log info, free resources
@@ -113,92 +251,72 @@ public final class World {
 
             return outside;
         });
+
+        // Let chunks that failed to load be retried
+        pendingChunks.removeIf((key, future) -> future.isCompletedExceptionally());
     }
 
     private void onChunkRemoved(Chunk chunk, ChunkPos pos) {
+        if (lastChunk == chunk) lastChunk = null;
         // Example of extra logic:
         System.out.println("Removing chunk at " + pos);
+        releaseChunk(chunk);
+
+        // Border faces of the neighbours were culled against this chunk and face nothing now
+        markAllDirty(pos.x() - 1, pos.z());
+        markAllDirty(pos.x() + 1, pos.z());
+        markAllDirty(pos.x(), pos.z() - 1);
+        markAllDirty(pos.x(), pos.z() + 1);
+    }
+
+    private void releaseChunk(Chunk chunk) {
         chunk.dispose();
-        saveChunk(chunk, pos);
+        if (chunk.isModified()) {
+            // Nothing touches an unloaded chunk anymore, so it can be queued as is without a snapshot
+            chunk.setModified(false);
+            saveQueue.enqueue(chunk);
+        }
+        evictedChunks.add(chunk);
     }
 
     public Chunk loadChunk(ChunkPos chunkPos) {
-        Path worldFolder = Path.of("world");
-        if (!Files.exists(worldFolder)) return generateChunk(chunkPos);
-        Path chunkFile = worldFolder.resolve("chk-%s-%s.chk".formatted(chunkPos.x(), chunkPos.z()));
-        if (!Files.exists(chunkFile)) return generateChunk(chunkPos);
-
-        Inflater inflater = new Inflater();
-
-        try (DataInputStream in = new DataInputStream(
-                new InflaterInputStream(
-                        Files.newInputStream(chunkFile),
-                        inflater))) {
-
-            int x = in.readInt();
-            int y = in.readInt();
-            int z = in.readInt();
-
-            Chunk chunk = new Chunk(255, this, chunkPos);
-
-            for (int i = 0; i < x; i++)
-                for (int j = 0; j < y; j++)
-                    for (int k = 0; k < z; k++)
-                        chunk.setBlock(
-                                BuiltInRegistries.BLOCK_REGISTRY.getByInternalId(in.readInt()),
-                                new BlockPos(i, j, k),
-                                BlockAction.NONE
-                        );
+        // A save still waiting in the queue is newer than what's on disk
+        final Chunk pending = saveQueue.getPending(chunkPos);
+        if (pending != null) return pending.snapshot();
 
+        try {
+            byte[] data = evictedChunks.take(chunkPos); // Recently unloaded chunks skip the region file
+            if (data == null) data = regionStorage.read(chunkPos);
+            Chunk chunk = data == null ? generateChunk(chunkPos) : ChunkSerializer.deserialize(this, chunkPos, data);
+            chunk.setModified(false);
             return chunk;
-
         } catch (IOException e) {
             throw new RuntimeException(e);
-        } finally {
-            inflater.end(); // Clean up native resources
         }
     }
 
+    /**
+     * @return the culling state and counts of the last rendered frame
+     */
+    public ChunkCulling getCulling() {
+        return culling;
+    }
 
-
-    public void saveChunk(Chunk chunk, ChunkPos chunkPos) {
-        Path worldFolder = Path.of("world");
-        try {
-            Files.createDirectories(worldFolder);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        Path chunkFile = worldFolder.resolve("chk-%s-%s.chk".formatted(chunkPos.x(), chunkPos.z()));
-
-        // Define your Deflater with BEST_COMPRESSION or whatever suits your sad little disk
-        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION); // or NO_COMPRESSION, etc.
-
-        try (DataOutputStream out = new DataOutputStream(
-                new DeflaterOutputStream(
-                        Files.newOutputStream(chunkFile),
-                        deflater))) {
-
-            final var data = chunk.getSaveData();
-            int x = data.length;
-            int y = data[0].length;
-            int z = data[0][0].length;
-            out.writeInt(x);
-            out.writeInt(y);
-            out.writeInt(z);
-
-            for (int[][] slice : data)
-                for (int[] row : slice)
-                    for (int val : row)
-                        out.writeInt(val);
-
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            deflater.end(); // Clean up native resources
-        }
+    public CompressedChunkCache getEvictedChunks() {
+        return evictedChunks;
     }
 
+    /**
+     * Hands snapshots of every loaded chunk changed since its last save to the save queue.
+     * Only copies block data on the calling thread, the disk work happens in the background.
+     */
+    public void saveModified() {
+        chunks.forEach((key, chunk) -> {
+            if (!chunk.isModified()) return;
+            chunk.setModified(false);
+            saveQueue.enqueue(chunk.snapshot());
+        });
+    }
 
     public Chunk generateChunk(ChunkPos chunkPos) {
         final int CHUNK_SIZE = 16;
@@ -206,6 +324,11 @@ public final class World {
 
         Chunk chunk = new Chunk(CHUNK_HEIGHT, this, chunkPos);
 
+        final int grass = BuiltInRegistries.BLOCK_REGISTRY.getInternalId(BuiltInRegistries.GRASS_BLOCK);
+        final int dirt = BuiltInRegistries.BLOCK_REGISTRY.getInternalId(BuiltInRegistries.DIRT_BLOCK);
+        final int stone = BuiltInRegistries.BLOCK_REGISTRY.getInternalId(BuiltInRegistries.STONE_BLOCK);
+        final int bedrock = BuiltInRegistries.BLOCK_REGISTRY.getInternalId(BuiltInRegistries.DIAMOND_BLOCK);
+
         // Set up OpenSimplex noise
         long seed = 1337L;
         // Set up OpenSimplex noise with proper 4.1.0 syntax
@@ -229,29 +352,39 @@ public final class World {
                 surfaceY = Math.max(1, Math.min(surfaceY, CHUNK_HEIGHT - 1));
 
                 for (int y = 0; y <= surfaceY; y++) {
-                    Block block;
+                    int block;
 
                     if (y == surfaceY) {
-                        block = BuiltInRegistries.GRASS_BLOCK;
+                        block = grass;
                     } else if (y > surfaceY - 4) {
-                        block = BuiltInRegistries.DIRT_BLOCK;
+                        block = dirt;
                     } else {
-                        block = BuiltInRegistries.STONE_BLOCK;
+                        block = stone;
                     }
 
-                    chunk.setBlock(block, new BlockPos(x, y, z), BlockAction.NONE);
+                    chunk.setBlockId(x, y, z, block, BlockAction.NONE);
                 }
 
                 // Bedrock base
-                chunk.setBlock(BuiltInRegistries.DIAMOND_BLOCK, new BlockPos(x, 0, z), BlockAction.NONE);
+                chunk.setBlockId(x, 0, z, bedrock, BlockAction.NONE);
             }
         }
 
-        chunk.updateMesh();
         return chunk;
     }
 
-    public void saveAll() {
-        chunks.forEach(((chunkPos, chunk) -> saveChunk(chunk, chunkPos)));
+    /**
+     * Queues every modified chunk and waits until all pending saves are written.
+     */
+    public void close() {
+        chunkWorkers.shutdownNow();
+        evictedChunks.close();
+        saveModified();
+        saveQueue.flush();
+        try {
+            regionStorage.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 }
\ No newline at end of file
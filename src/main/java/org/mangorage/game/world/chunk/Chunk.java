@@ -1,81 +1,238 @@
 package org.mangorage.game.world.chunk;
 
-import org.joml.Matrix4f;
 import org.mangorage.game.block.Block;
 import org.mangorage.game.core.BuiltInRegistries;
+import org.mangorage.game.renderer.chunk.ChunkCulling;
 import org.mangorage.game.renderer.chunk.ChunkMesh;
 import org.mangorage.game.renderer.chunk.ChunkRenderer;
+import org.mangorage.game.renderer.chunk.SectionVisibility;
+import org.mangorage.game.util.BlockGetter;
 import org.mangorage.game.world.BlockAction;
 import org.mangorage.game.world.BlockPos;
 import org.mangorage.game.world.World;
 
 import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+public final class Chunk implements BlockGetter {
+    public static final int OCCLUDER_CELL = 4; // Columns per side of one cell of the occluder heightmap
 
-public final class Chunk {
     private final int sY;
-    private final int[][][] blocks;
+    private final ChunkSection[] sections;
     private final World world;
     private final ChunkPos chunkPos;
 
-    private volatile boolean dirty = true;
-    private volatile ChunkMesh chunkMesh = null;
+    private volatile boolean modified = false; // Changed since it was last loaded or handed off for saving
+    private boolean disposed = false; // Render thread only, meshes finishing after this are dropped
 
+    // Solid height per occluder cell, see getOccluderHeights
+    private final int[] occluderHeights = new int[(16 / OCCLUDER_CELL) * (16 / OCCLUDER_CELL)];
+    private int occluderRevision = -1;
 
+    // Chunk-local lookups that continue into the neighbouring chunks, so faces on the chunk border get culled
+    private final BlockGetter neighborhood = this::getBlockIdOrNeighbor;
 
     public Chunk(final int sY, World world, ChunkPos chunkPos) {
         this.sY = sY;
         this.world = world;
         this.chunkPos = chunkPos;
 
-        this.blocks = new int[16][sY][16];
-        for (int[][] block : blocks) {
-            for (int[] blocks : block) {
-                Arrays.fill(blocks, BuiltInRegistries.BLOCK_REGISTRY.getInternalId(BuiltInRegistries.AIR_BLOCK));
-            }
+        this.sections = new ChunkSection[(sY + ChunkSection.SIZE - 1) / ChunkSection.SIZE];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new ChunkSection(i);
+        }
+    }
+
+    private Chunk(Chunk other) {
+        this.sY = other.sY;
+        this.world = other.world;
+        this.chunkPos = other.chunkPos;
+
+        this.sections = new ChunkSection[other.sections.length];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = other.sections[i].copy();
         }
     }
 
+    /**
+     * Detached copy of the block data, safe to read from another thread while this chunk keeps changing.
+     */
+    public Chunk snapshot() {
+        return new Chunk(this);
+    }
+
+    public boolean isModified() {
+        return modified;
+    }
+
+    public void setModified(boolean modified) {
+        this.modified = modified;
+    }
+
     public boolean isValid(BlockPos blockPos) {
-        return blockPos.x() < 16 && blockPos.y() < sY && blockPos.z() < 16 && blockPos.x() >= 0 && blockPos.y() >= 0 && blockPos.z() >= 0;
+        return isValid(blockPos.x(), blockPos.y(), blockPos.z());
     }
 
-    public void setBlock(Block block, BlockPos blockPos, BlockAction blockAction) { // Needs to be relative here...
-        if (!isValid(blockPos)) return;
-        blocks[blockPos.x()][blockPos.y()][blockPos.z()] = block == null ? BuiltInRegistries.BLOCK_REGISTRY.getDefaultInternalId() : BuiltInRegistries.BLOCK_REGISTRY.getInternalId(block);
+    public boolean isValid(int x, int y, int z) {
+        return x < 16 && y < sY && z < 16 && x >= 0 && y >= 0 && z >= 0;
+    }
+
+    /**
+     * @return true if the stored block actually changed
+     */
+    public boolean setBlock(Block block, BlockPos blockPos, BlockAction blockAction) { // Needs to be relative here...
+        final int id = block == null ? BuiltInRegistries.BLOCK_REGISTRY.getDefaultInternalId() : BuiltInRegistries.BLOCK_REGISTRY.getInternalId(block);
+        return setBlockId(blockPos.x(), blockPos.y(), blockPos.z(), id, blockAction);
+    }
+
+    /**
+     * Sets the internal id at a chunk-local position.
+     *
+     * @return true if the stored block actually changed
+     */
+    public boolean setBlockId(int x, int y, int z, int id, BlockAction blockAction) {
+        if (!isValid(x, y, z)) return false;
+
+        final int sectionIndex = y / ChunkSection.SIZE;
+        final int localY = y % ChunkSection.SIZE;
+        if (sections[sectionIndex].setBlockId(x, localY, z, id) == id) return false;
+        modified = true;
+
+        // Faces against the neighbouring section may have been revealed or hidden
+        if (localY == 0 && sectionIndex > 0)
+            sections[sectionIndex - 1].markDirty();
+        if (localY == ChunkSection.SIZE - 1 && sectionIndex < sections.length - 1)
+            sections[sectionIndex + 1].markDirty();
+
         if (blockAction == BlockAction.UPDATE) {
             updateMesh();
         }
-        dirty = true;
+        return true;
+    }
+
+    /**
+     * Marks the section containing the given y level for a rebuild.
+     */
+    public void markDirty(int y) {
+        if (y < 0 || y >= sY) return;
+        sections[y / ChunkSection.SIZE].markDirty();
     }
 
+    /**
+     * Marks every section with blocks for a rebuild, used when a neighbouring chunk appears.
+     */
+    public void markAllDirty() {
+        for (ChunkSection section : sections) {
+            if (!section.isEmpty()) section.markDirty();
+        }
+    }
+
+    /**
+     * Rebuilds the mesh of every dirty section. Sections with blocks are snapshotted here and meshed on the mesh
+     * workers, the old mesh stays until the new one is uploaded. A mesh whose section was marked dirty again in the
+     * meantime is dropped, the newer build replaces it.
+     */
     public void updateMesh() {
-        if (!dirty) return;
-        dirty = false;
-        final var oldMesh = chunkMesh;
-        this.chunkMesh = null;
-        this.chunkMesh = ChunkRenderer.get().buildMesh(world, chunkPos, blocks);
-        if (oldMesh != null) oldMesh.dispose();
+        for (ChunkSection section : sections) {
+            if (!section.isDirty()) continue;
+            section.clearDirty();
+
+            if (section.isEmpty()) {
+                final var oldMesh = section.getMesh();
+                section.setMesh(null);
+                section.setVisibility(SectionVisibility.ALL);
+                if (oldMesh != null) oldMesh.dispose();
+                continue;
+            }
+
+            final int revision = section.getRevision();
+            final SectionSnapshot snapshot = new SectionSnapshot(section, neighborhood);
+            ChunkRenderer.get().buildMeshAsync(snapshot.getBlocks(), snapshot.getMinY(), snapshot, data -> {
+                if (disposed || section.getRevision() != revision) return; // Stale
+                final var oldMesh = section.getMesh();
+                section.setMesh(ChunkRenderer.get().upload(data));
+                section.setVisibility(data.getVisibility());
+                if (oldMesh != null) oldMesh.dispose();
+            });
+        }
     }
 
     public void dispose() {
-        if (this.chunkMesh != null) {
-            this.chunkMesh.dispose();
+        disposed = true;
+        for (ChunkSection section : sections) {
+            final var mesh = section.getMesh();
+            section.setMesh(null);
+            if (mesh != null) mesh.dispose();
         }
     }
 
     public Block getBlock(BlockPos blockPos) {
-        if (!isValid(blockPos)) return BuiltInRegistries.AIR_BLOCK;
-        return BuiltInRegistries.BLOCK_REGISTRY.getByInternalId(blocks[blockPos.x()][blockPos.y()][blockPos.z()]);
+        return getBlock(blockPos.x(), blockPos.y(), blockPos.z());
+    }
+
+    /**
+     * Internal id at a chunk-local position, air when the position is outside this chunk.
+     */
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        if (!isValid(x, y, z)) return BuiltInRegistries.BLOCK_REGISTRY.getDefaultInternalId();
+        return sections[y / ChunkSection.SIZE].getBlockId(x, y % ChunkSection.SIZE, z);
+    }
+
+    private int getBlockIdOrNeighbor(int x, int y, int z) {
+        if (((x | z) & ~15) == 0 || world == null) return getBlockId(x, y, z);
+        return world.getBlockId(chunkPos.x() * 16 + x, y, chunkPos.z() * 16 + z);
+    }
+
+    /**
+     * Heightmap hull for occlusion culling, one entry per {@link #OCCLUDER_CELL} wide cell of columns, x fastest.
+     * Every block below the height is {@code opaque} in every column of the cell. Cached until a section changes.
+     */
+    public int[] getOccluderHeights(IntPredicate opaque) {
+        int revision = 0;
+        for (ChunkSection section : sections) revision += section.getRevision(); // Revisions only grow
+        if (revision == occluderRevision) return occluderHeights;
+        occluderRevision = revision;
+
+        final int cells = 16 / OCCLUDER_CELL;
+        Arrays.fill(occluderHeights, sY);
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                final int cell = (z / OCCLUDER_CELL) * cells + x / OCCLUDER_CELL;
+                int height = 0;
+                while (height < occluderHeights[cell] && !sections[height / ChunkSection.SIZE].isEmpty()
+                        && opaque.test(getBlockId(x, height, z))) {
+                    height++;
+                }
+                occluderHeights[cell] = height;
+            }
+        }
+        return occluderHeights;
     }
 
-    public int[][][] getSaveData() {
-        return blocks;
+    public ChunkSection[] getSections() {
+        return sections;
     }
 
-    public void render(Matrix4f model, Matrix4f view, Matrix4f projection) {
-        // ... Should never be null... but we check anyways...
-        if (chunkMesh == null) return; // Cant render, we don't have a mesh yet!
-        ChunkRenderer.get().render(chunkMesh, model, view, projection);
+    public long getMemoryUsage() {
+        long size = 16 + 16 + (long) sections.length * 4;
+        for (ChunkSection section : sections) {
+            size += section.getMemoryUsage();
+        }
+        return size;
+    }
+
+    /**
+     * Queues the section meshes that pass {@code culling} for the world pass, see {@link ChunkRenderer#beginWorldPass}.
+     */
+    public void render(ChunkCulling culling) {
+        final float originX = chunkPos.x() * 16f, originZ = chunkPos.z() * 16f;
+        for (ChunkSection section : sections) {
+            ChunkMesh mesh = section.getMesh();
+            if (mesh == null) continue; // Empty, or no mesh yet
+            if (!culling.testSection(this, section, mesh)) continue;
+            ChunkRenderer.get().queueSection(mesh, originX, 0, originZ);
+        }
     }
 
     public int getHeight() {
@@ -1,3 +1,23 @@
 package org.mangorage.game.world.chunk;
 
-public record ChunkPos(int x, int z) {}
+public record ChunkPos(int x, int z) {
+    public static long asLong(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    public static int getX(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public static int getZ(long packed) {
+        return (int) packed;
+    }
+
+    public static ChunkPos fromLong(long packed) {
+        return new ChunkPos(getX(packed), getZ(packed));
+    }
+
+    public long toLong() {
+        return asLong(x, z);
+    }
+}
@@ -0,0 +1,118 @@
+package org.mangorage.game.world.chunk;
+
+import org.mangorage.game.core.BuiltInRegistries;
+import org.mangorage.game.renderer.chunk.ChunkMesh;
+import org.mangorage.game.renderer.chunk.SectionVisibility;
+
+/**
+ * A 16x16x16 slice of a {@link Chunk}.
+ * Sections that only hold air drop their block storage entirely, and every section
+ * keeps its own dirty flag and mesh so an edit only rebuilds the part of the chunk it touched.
+ */
+public final class ChunkSection {
+    public static final int SIZE = 16;
+
+    private static final int AIR = BuiltInRegistries.BLOCK_REGISTRY.getDefaultInternalId();
+
+    private final int sectionY;
+
+    private PalettedContainer blocks = null; // Null while the section is all air
+    private int nonAirCount = 0;
+
+    private volatile boolean dirty = false;
+    private int revision = 0; // Bumped whenever the section is marked dirty, tells meshes built from older contents apart
+    private volatile ChunkMesh mesh = null;
+    private long visibility = SectionVisibility.ALL; // Faces that see each other through this section, from its last mesh
+
+    public ChunkSection(int sectionY) {
+        this.sectionY = sectionY;
+    }
+
+    /**
+     * Copies the block data only, the copy has no mesh and is not dirty.
+     */
+    public ChunkSection copy() {
+        ChunkSection copy = new ChunkSection(sectionY);
+        copy.blocks = blocks == null ? null : blocks.copy();
+        copy.nonAirCount = nonAirCount;
+        return copy;
+    }
+
+    public int getSectionY() {
+        return sectionY;
+    }
+
+    public int getMinY() {
+        return sectionY * SIZE;
+    }
+
+    public boolean isEmpty() {
+        return blocks == null;
+    }
+
+    public PalettedContainer getBlocks() {
+        return blocks;
+    }
+
+    public int getBlockId(int x, int y, int z) {
+        if (blocks == null) return AIR;
+        return blocks.get(x, y, z);
+    }
+
+    /**
+     * @return the internal id previously stored at the given section-local position
+     */
+    public int setBlockId(int x, int y, int z, int id) {
+        if (blocks == null) {
+            if (id == AIR) return AIR;
+            blocks = new PalettedContainer(SIZE, SIZE, SIZE, AIR);
+        }
+
+        int previous = blocks.set(x, y, z, id);
+        if (previous == id) return previous;
+
+        if (previous == AIR) nonAirCount++;
+        else if (id == AIR) nonAirCount--;
+
+        if (nonAirCount == 0) blocks = null;
+        markDirty();
+        return previous;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void markDirty() {
+        this.dirty = true;
+        this.revision++;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public void clearDirty() {
+        this.dirty = false;
+    }
+
+    public ChunkMesh getMesh() {
+        return mesh;
+    }
+
+    public void setMesh(ChunkMesh mesh) {
+        this.mesh = mesh;
+    }
+
+    public long getVisibility() {
+        return visibility;
+    }
+
+    public void setVisibility(long visibility) {
+        this.visibility = visibility;
+    }
+
+    public long getMemoryUsage() {
+        return 40 + (blocks == null ? 0 : blocks.getMemoryUsage());
+    }
+}
@@ -0,0 +1,149 @@
+package org.mangorage.game.world.chunk;
+
+import java.util.Arrays;
+
+/**
+ * Palette backed block storage.
+ * Each cell stores an index into a small palette of registry internal ids, bit packed into longs.
+ * The packing width grows with the palette, so a container holding a handful of block types
+ * costs a few bits per cell instead of a full int.
+ */
+public final class PalettedContainer {
+    private final int sizeX, sizeY, sizeZ;
+
+    private int[] palette;
+    private int paletteSize;
+
+    private int bits = 0;
+    private int valuesPerLong = 0;
+    private long mask = 0;
+    private long[] data = null; // Null while every cell points at palette[0]
+
+    public PalettedContainer(int sizeX, int sizeY, int sizeZ, int defaultId) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.palette = new int[4];
+        this.palette[0] = defaultId;
+        this.paletteSize = 1;
+    }
+
+    private PalettedContainer(PalettedContainer other) {
+        this.sizeX = other.sizeX;
+        this.sizeY = other.sizeY;
+        this.sizeZ = other.sizeZ;
+        this.palette = other.palette.clone();
+        this.paletteSize = other.paletteSize;
+        this.bits = other.bits;
+        this.valuesPerLong = other.valuesPerLong;
+        this.mask = other.mask;
+        this.data = other.data == null ? null : other.data.clone();
+    }
+
+    public PalettedContainer copy() {
+        return new PalettedContainer(this);
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    public int get(int x, int y, int z) {
+        return palette[readIndex(index(x, y, z))];
+    }
+
+    /**
+     * Sets the internal id at the given cell.
+     *
+     * @return the internal id that was previously stored there
+     */
+    public int set(int x, int y, int z, int id) {
+        int cell = index(x, y, z);
+        int previous = palette[readIndex(cell)];
+        if (previous == id) return previous;
+
+        int paletteIndex = indexOf(id);
+        if (paletteIndex == -1) paletteIndex = addToPalette(id);
+        writeIndex(cell, paletteIndex);
+        return previous;
+    }
+
+    /**
+     * @return bits per packed index, 0 while the container only holds its default id
+     */
+    int getBits() {
+        return bits;
+    }
+
+    /**
+     * Approximate heap footprint of this container in bytes, including object and array headers.
+     */
+    public long getMemoryUsage() {
+        long size = 48; // Object header + fields
+        size += 16 + (long) palette.length * Integer.BYTES;
+        if (data != null) size += 16 + (long) data.length * Long.BYTES;
+        return size;
+    }
+
+    private int index(int x, int y, int z) {
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == id) return i;
+        }
+        return -1;
+    }
+
+    private int addToPalette(int id) {
+        if (paletteSize == palette.length)
+            palette = Arrays.copyOf(palette, paletteSize * 2);
+        int paletteIndex = paletteSize++;
+        palette[paletteIndex] = id;
+
+        if (paletteSize > (1 << bits))
+            resize(32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+
+        return paletteIndex;
+    }
+
+    private void resize(int newBits) {
+        final int volume = sizeX * sizeY * sizeZ;
+        final int oldBits = bits;
+        final int oldValuesPerLong = valuesPerLong;
+        final long oldMask = mask;
+        final long[] oldData = data;
+
+        bits = newBits;
+        valuesPerLong = 64 / newBits;
+        mask = (1L << newBits) - 1;
+        data = new long[(volume + valuesPerLong - 1) / valuesPerLong];
+
+        if (oldBits == 0) return; // Everything was index 0, which is what a zeroed array already holds
+
+        for (int i = 0; i < volume; i++) {
+            int value = (int) ((oldData[i / oldValuesPerLong] >>> ((i % oldValuesPerLong) * oldBits)) & oldMask);
+            writeIndex(i, value);
+        }
+    }
+
+    private int readIndex(int cell) {
+        if (bits == 0) return 0;
+        return (int) ((data[cell / valuesPerLong] >>> ((cell % valuesPerLong) * bits)) & mask);
+    }
+
+    private void writeIndex(int cell, int value) {
+        int word = cell / valuesPerLong;
+        int shift = (cell % valuesPerLong) * bits;
+        data[word] = (data[word] & ~(mask << shift)) | ((long) value << shift);
+    }
+}
@@ -0,0 +1,58 @@
+package org.mangorage.game.world.chunk;
+
+import org.mangorage.game.util.BlockGetter;
+
+/**
+ * Immutable copy of everything meshing a section reads: its blocks and the single layer of blocks
+ * touching each of its six sides. Taken on the render thread, so the mesh can be built on a worker
+ * while the chunk and its neighbours keep changing.
+ * <p>
+ * Lookups use the same coordinates as the chunk, x and z chunk-local and y in chunk space.
+ */
+public final class SectionSnapshot implements BlockGetter {
+    private static final int SIZE = ChunkSection.SIZE;
+    private static final int PLANE = SIZE * SIZE;
+
+    // Offsets of the border planes in border
+    private static final int BELOW = 0, ABOVE = PLANE, LOW_X = 2 * PLANE, HIGH_X = 3 * PLANE, LOW_Z = 4 * PLANE, HIGH_Z = 5 * PLANE;
+
+    private final PalettedContainer blocks;
+    private final int minY;
+    private final int[] border = new int[6 * PLANE];
+
+    /**
+     * @param around chunk coordinate lookups that reach into the neighbouring chunks
+     */
+    public SectionSnapshot(ChunkSection section, BlockGetter around) {
+        this.blocks = section.getBlocks().copy();
+        this.minY = section.getMinY();
+
+        // One plane at a time, so consecutive lookups stay in the same neighbouring chunk
+        for (int i = 0; i < PLANE; i++) border[BELOW + i] = around.getBlockId(i % SIZE, minY - 1, i / SIZE);
+        for (int i = 0; i < PLANE; i++) border[ABOVE + i] = around.getBlockId(i % SIZE, minY + SIZE, i / SIZE);
+        for (int i = 0; i < PLANE; i++) border[LOW_X + i] = around.getBlockId(-1, minY + i / SIZE, i % SIZE);
+        for (int i = 0; i < PLANE; i++) border[HIGH_X + i] = around.getBlockId(SIZE, minY + i / SIZE, i % SIZE);
+        for (int i = 0; i < PLANE; i++) border[LOW_Z + i] = around.getBlockId(i % SIZE, minY + i / SIZE, -1);
+        for (int i = 0; i < PLANE; i++) border[HIGH_Z + i] = around.getBlockId(i % SIZE, minY + i / SIZE, SIZE);
+    }
+
+    public PalettedContainer getBlocks() {
+        return blocks;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        final int localY = y - minY;
+        if (localY < 0) return border[BELOW + z * SIZE + x];
+        if (localY >= SIZE) return border[ABOVE + z * SIZE + x];
+        if (x < 0) return border[LOW_X + localY * SIZE + z];
+        if (x >= SIZE) return border[HIGH_X + localY * SIZE + z];
+        if (z < 0) return border[LOW_Z + localY * SIZE + x];
+        if (z >= SIZE) return border[HIGH_Z + localY * SIZE + x];
+        return blocks.get(x, localY, z);
+    }
+}
@@ -0,0 +1,124 @@
+package org.mangorage.game.world.storage;
+
+import org.mangorage.game.util.collection.ConcurrentLongMap;
+import org.mangorage.game.world.chunk.Chunk;
+import org.mangorage.game.world.chunk.ChunkPos;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind chunk saving.
+ * <p>
+ * Callers hand over a chunk that will no longer change (an unloaded chunk or a {@link Chunk#snapshot()}),
+ * serialization and disk I/O happen on a background thread. Saving the same chunk again before the
+ * previous save ran just replaces the pending data, and a pending chunk stays visible through
+ * {@link #getPending(ChunkPos)} until it has actually been written.
+ */
+public final class ChunkSaveQueue {
+    private final RegionStorage storage;
+    private final ConcurrentLongMap<Chunk> pending = new ConcurrentLongMap<>();
+    private final BlockingQueue<Runnable> queuedSaves = new LinkedBlockingQueue<>();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queuedSaves, runnable -> {
+        Thread thread = new Thread(runnable, "Chunk Saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChunkSaveQueue(RegionStorage storage) {
+        this.storage = storage;
+    }
+
+    public void enqueue(Chunk chunk) {
+        final long key = chunk.getChunkPos().toLong();
+        if (pending.put(key, chunk) == null) {
+            executor.execute(() -> save(key));
+        }
+        // Otherwise a save is already queued and will pick up the newer data
+    }
+
+    /**
+     * @return data that is queued but not yet on disk, newer than what the region file holds
+     */
+    public Chunk getPending(ChunkPos chunkPos) {
+        return pending.get(chunkPos.toLong());
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void save(long key) {
+        Chunk chunk = pending.get(key);
+        while (chunk != null) {
+            try {
+                storage.write(chunk.getChunkPos(), ChunkSerializer.serialize(chunk));
+            } catch (IOException e) {
+                System.err.println("Failed to save chunk at " + chunk.getChunkPos());
+                e.printStackTrace();
+            }
+
+            if (pending.remove(key, chunk)) return;
+            chunk = pending.get(key); // Replaced while we were writing, write the newer data too
+        }
+    }
+
+    /**
+     * Writes everything still pending and waits for it, however long that takes. The queue can't be used afterwards.
+     * <p>
+     * Saves that haven't started are dropped from the background thread, and the one it is running is waited for.
+     * The pending chunks are then written by one task per region file, so regions are written in parallel while
+     * each chunk still has a single writer.
+     */
+    public void flush() {
+        queuedSaves.clear(); // Their chunks are all still in pending
+        executor.shutdown();
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true; // Leaving now would let the storage close under the running save
+            }
+        }
+
+        while (pending.size() > 0) {
+            Map<Long, List<Long>> byRegion = new HashMap<>();
+            pending.forEach((key, chunk) -> byRegion
+                    .computeIfAbsent(RegionStorage.getRegionKey(ChunkPos.getX(key), ChunkPos.getZ(key)), region -> new ArrayList<>())
+                    .add(key));
+            saveRegions(byRegion.values());
+        }
+
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void saveRegions(Collection<List<Long>> regions) {
+        final AtomicInteger count = new AtomicInteger();
+        final ExecutorService writers = Executors.newFixedThreadPool(
+                Math.min(regions.size(), Runtime.getRuntime().availableProcessors()),
+                runnable -> new Thread(runnable, "Chunk Flush-" + count.incrementAndGet())
+        );
+        try {
+            List<CompletableFuture<Void>> saves = new ArrayList<>();
+            for (List<Long> keys : regions) {
+                saves.add(CompletableFuture.runAsync(() -> keys.forEach(this::save), writers)); // RegionFile locks per file anyway
+            }
+            CompletableFuture.allOf(saves.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            writers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package org.mangorage.game.world.storage;
+
+import org.mangorage.game.core.BuiltInRegistries;
+import org.mangorage.game.world.BlockAction;
+import org.mangorage.game.world.World;
+import org.mangorage.game.world.chunk.Chunk;
+import org.mangorage.game.world.chunk.ChunkPos;
+import org.mangorage.game.world.chunk.ChunkSection;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Converts chunks to and from the payload stored in region files.
+ * <p>
+ * Layout, big endian:
+ * <pre>
+ * int   MAGIC
+ * byte  VERSION
+ * int   length of the body once inflated
+ * ...   deflated body:
+ *       int sizeX, sizeY, sizeZ
+ *       int paletteSize, int[paletteSize] internal ids
+ *       int runCount, then runCount pairs of (int length, int palette index)
+ * </pre>
+ * Cells are visited in (y, z, x) order, so the runs follow horizontal layers of terrain and air.
+ * Payloads without the magic are the old format (a deflated stream of every id as an int) and are still readable.
+ */
+public final class ChunkSerializer {
+    private static final int MAGIC = 0x4D43484B; // "MCHK"
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES + 1 + Integer.BYTES;
+
+    // Limits for data read back, anything outside them is corrupt rather than a reason to allocate
+    private static final int MAX_HEIGHT = 256;
+    private static final int MAX_BODY_BYTES = Integer.BYTES * (5 + 3 * 16 * MAX_HEIGHT * 16); // Every cell its own palette entry and run
+
+    private static volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    public static int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * @param level a {@link Deflater} level, from {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}
+     */
+    public static void setCompressionLevel(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        compressionLevel = level;
+    }
+
+    public static byte[] serialize(Chunk chunk) {
+        return serialize(chunk, compressionLevel);
+    }
+
+    public static byte[] serialize(Chunk chunk, int level) {
+        final int sizeY = chunk.getHeight();
+
+        int[] palette = new int[16];
+        int paletteSize = 0;
+        int[] runs = new int[64];
+        int runCount = 0;
+
+        int currentId = 0;
+        int currentLength = 0;
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    final int id = chunk.getBlockId(x, y, z);
+                    if (currentLength > 0 && id == currentId) {
+                        currentLength++;
+                        continue;
+                    }
+
+                    if (currentLength > 0) {
+                        if (runCount * 2 == runs.length) runs = Arrays.copyOf(runs, runs.length * 2);
+                        runs[runCount * 2] = currentLength;
+                        runs[runCount * 2 + 1] = indexOf(palette, paletteSize, currentId);
+                        runCount++;
+                    }
+
+                    if (indexOf(palette, paletteSize, id) == -1) {
+                        if (paletteSize == palette.length) palette = Arrays.copyOf(palette, paletteSize * 2);
+                        palette[paletteSize++] = id;
+                    }
+                    currentId = id;
+                    currentLength = 1;
+                }
+            }
+        }
+        if (currentLength > 0) {
+            if (runCount * 2 == runs.length) runs = Arrays.copyOf(runs, runs.length * 2);
+            runs[runCount * 2] = currentLength;
+            runs[runCount * 2 + 1] = indexOf(palette, paletteSize, currentId);
+            runCount++;
+        }
+
+        final int bodyBytes = Integer.BYTES * (3 + 1 + paletteSize + 1 + runCount * 2);
+        ByteBuffer body = ByteBuffer.allocate(bodyBytes);
+        IntBuffer ints = body.asIntBuffer();
+        ints.put(16).put(sizeY).put(16);
+        ints.put(paletteSize).put(palette, 0, paletteSize);
+        ints.put(runCount).put(runs, 0, runCount * 2);
+
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+
+            ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + bodyBytes / 2 + 64);
+            out.putInt(MAGIC).put(VERSION).putInt(bodyBytes);
+            while (true) {
+                deflater.deflate(out);
+                if (deflater.finished()) break;
+                out = ByteBuffer.allocate(out.capacity() * 2).put(out.flip());
+            }
+            return Arrays.copyOf(out.array(), out.position());
+        } finally {
+            deflater.end(); // Clean up native resources
+        }
+    }
+
+    public static Chunk deserialize(World world, ChunkPos chunkPos, byte[] data) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(data);
+        if (data.length < HEADER_BYTES || header.getInt() != MAGIC)
+            return deserializeLegacy(world, chunkPos, data);
+
+        final byte version = header.get();
+        if (version != VERSION)
+            throw new IOException("Unsupported chunk format version " + version + " at " + chunkPos);
+
+        final int bodyBytes = header.getInt();
+        if (bodyBytes < Integer.BYTES * 5 || bodyBytes > MAX_BODY_BYTES)
+            throw new IOException("Corrupt chunk data at %s (body length %s)".formatted(chunkPos, bodyBytes));
+
+        ByteBuffer body = ByteBuffer.allocate(bodyBytes);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(header);
+            while (body.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(body) == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("Truncated chunk data at " + chunkPos);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt chunk data at " + chunkPos, e);
+        } finally {
+            inflater.end(); // Clean up native resources
+        }
+        if (body.hasRemaining())
+            throw new IOException("Truncated chunk data at %s (%s of %s bytes)".formatted(chunkPos, body.position(), bodyBytes));
+
+        IntBuffer ints = body.flip().asIntBuffer();
+        final int sizeX = ints.get();
+        final int sizeY = ints.get();
+        final int sizeZ = ints.get();
+        if (sizeX != 16 || sizeZ != 16 || sizeY <= 0 || sizeY > MAX_HEIGHT)
+            throw new IOException("Corrupt chunk data at %s (size %s, %s, %s)".formatted(chunkPos, sizeX, sizeY, sizeZ));
+
+        final int paletteSize = ints.get();
+        if (paletteSize <= 0 || paletteSize > ints.remaining() - 1)
+            throw new IOException("Corrupt chunk data at %s (palette size %s)".formatted(chunkPos, paletteSize));
+        final int[] palette = new int[paletteSize];
+        ints.get(palette);
+        for (int id : palette) {
+            if (BuiltInRegistries.BLOCK_REGISTRY.getByInternalId(id) == null)
+                throw new IOException("Corrupt chunk data at %s (unknown block id %s)".formatted(chunkPos, id));
+        }
+
+        final int runCount = ints.get();
+        if (runCount <= 0 || runCount != ints.remaining() / 2)
+            throw new IOException("Corrupt chunk data at %s (run count %s)".formatted(chunkPos, runCount));
+        final int[] runs = new int[runCount * 2];
+        ints.get(runs);
+
+        // Checked up front so a bad run can't leave a half filled chunk behind
+        final int volume = sizeX * sizeY * sizeZ;
+        int total = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            final int length = runs[i];
+            final int paletteIndex = runs[i + 1];
+            if (length <= 0 || length > volume - total)
+                throw new IOException("Corrupt chunk data at %s (run of %s after %s of %s cells)".formatted(chunkPos, length, total, volume));
+            if (paletteIndex < 0 || paletteIndex >= paletteSize)
+                throw new IOException("Corrupt chunk data at %s (palette index %s of %s)".formatted(chunkPos, paletteIndex, paletteSize));
+            total += length;
+        }
+        if (total != volume)
+            throw new IOException("Corrupt chunk data at %s (runs cover %s of %s cells)".formatted(chunkPos, total, volume));
+
+        Chunk chunk = new Chunk(sizeY, world, chunkPos);
+        final ChunkSection[] sections = chunk.getSections();
+        final int air = BuiltInRegistries.BLOCK_REGISTRY.getDefaultInternalId();
+
+        // Sections start out as air, so air runs are skipped and nothing goes through the per-block update path
+        int cell = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            final int length = runs[i];
+            final int id = palette[runs[i + 1]];
+            if (id != air) {
+                for (int c = cell, end = cell + length; c < end; c++) {
+                    final int x = c % sizeX;
+                    final int z = (c / sizeX) % sizeZ;
+                    final int y = c / (sizeX * sizeZ);
+                    sections[y / ChunkSection.SIZE].setBlockId(x, y % ChunkSection.SIZE, z, id);
+                }
+            }
+            cell += length;
+        }
+
+        return chunk;
+    }
+
+    private static int indexOf(int[] palette, int paletteSize, int id) {
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == id) return i;
+        }
+        return -1;
+    }
+
+    private static Chunk deserializeLegacy(World world, ChunkPos chunkPos, byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+
+        try (DataInputStream in = new DataInputStream(
+                new InflaterInputStream(
+                        new ByteArrayInputStream(data),
+                        inflater))) {
+
+            int x = in.readInt();
+            int y = in.readInt();
+            int z = in.readInt();
+            if (x != 16 || z != 16 || y < 0 || y > 255)
+                throw new IOException("Corrupt legacy chunk data at %s (size %s, %s, %s)".formatted(chunkPos, x, y, z));
+
+            Chunk chunk = new Chunk(255, world, chunkPos);
+
+            for (int i = 0; i < x; i++)
+                for (int j = 0; j < y; j++)
+                    for (int k = 0; k < z; k++) {
+                        final int id = in.readInt();
+                        if (BuiltInRegistries.BLOCK_REGISTRY.getByInternalId(id) == null)
+                            throw new IOException("Corrupt legacy chunk data at %s (unknown block id %s)".formatted(chunkPos, id));
+                        chunk.setBlockId(i, j, k, id, BlockAction.NONE);
+                    }
+
+            return chunk;
+
+        } finally {
+            inflater.end(); // Clean up native resources
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.mangorage.game.world.storage;
+
+import org.mangorage.game.world.chunk.Chunk;
+import org.mangorage.game.world.chunk.ChunkPos;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Second tier for chunks that were just unloaded.
+ * <p>
+ * Evicted chunks are kept serialized in memory so walking back over the render distance border
+ * only costs an inflate, not a region file read or a regeneration. Entries are dropped least
+ * recently used first once the total payload size goes over the byte budget.
+ * <p>
+ * Compression runs on a single background thread in the order chunks were added, so a chunk evicted
+ * twice in quick succession always ends up holding its newer data. A chunk requested again before its
+ * compression finished is simply a miss and comes from the save queue or disk instead.
+ */
+public final class CompressedChunkCache {
+    private final long maxBytes;
+    private final LinkedHashMap<Long, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long sizeBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Chunk Compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CompressedChunkCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Compresses the chunk in the background and caches it. The chunk must not change afterwards.
+     */
+    public void add(Chunk chunk) {
+        final long key = chunk.getChunkPos().toLong();
+        // An older entry can exist if the chunk was reloaded before its last compression finished, don't let it be served
+        synchronized (this) {
+            byte[] stale = entries.remove(key);
+            if (stale != null) sizeBytes -= stale.length;
+        }
+        compressor.execute(() -> put(key, ChunkSerializer.serialize(chunk)));
+    }
+
+    private synchronized void put(long key, byte[] data) {
+        byte[] previous = entries.put(key, data);
+        if (previous != null) sizeBytes -= previous.length;
+        sizeBytes += data.length;
+
+        Iterator<Map.Entry<Long, byte[]>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxBytes && iterator.hasNext()) {
+            sizeBytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Removes and returns the cached payload, the caller turns it back into a loaded chunk.
+     *
+     * @return the serialized chunk, or null if it isn't cached
+     */
+    public synchronized byte[] take(ChunkPos chunkPos) {
+        byte[] data = entries.remove(chunkPos.toLong());
+        if (data == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        sizeBytes -= data.length;
+        return data;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void close() {
+        compressor.shutdownNow();
+        synchronized (this) {
+            entries.clear();
+            sizeBytes = 0;
+        }
+    }
+}
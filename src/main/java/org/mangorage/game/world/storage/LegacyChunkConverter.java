@@ -0,0 +1,49 @@
+package org.mangorage.game.world.storage;
+
+import org.mangorage.game.world.chunk.ChunkPos;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Moves worlds saved as one {@code chk-x-z.chk} file per chunk into region files.
+ * The old files already hold the exact region payload, so conversion is a copy.
+ */
+public final class LegacyChunkConverter {
+    private static final Pattern LEGACY_NAME = Pattern.compile("chk-(-?\\d+)-(-?\\d+)\\.chk");
+
+    /**
+     * Converts and deletes every legacy chunk file in the world folder. The files are only deleted once the
+     * region files are flushed, a crash halfway through leaves them to be converted again.
+     *
+     * @return the number of chunks converted
+     */
+    public static int convert(Path worldFolder, RegionStorage storage) throws IOException {
+        if (!Files.isDirectory(worldFolder)) return 0;
+
+        List<Path> converted = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(worldFolder, "chk-*.chk")) {
+            for (Path file : files) {
+                Matcher matcher = LEGACY_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches()) continue;
+
+                ChunkPos chunkPos = new ChunkPos(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                storage.write(chunkPos, Files.readAllBytes(file));
+                converted.add(file);
+            }
+        }
+
+        if (converted.isEmpty()) return 0;
+        storage.flush();
+        for (Path file : converted) {
+            Files.delete(file);
+        }
+        return converted.size();
+    }
+}
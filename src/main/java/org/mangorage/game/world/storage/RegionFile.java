@@ -0,0 +1,141 @@
+package org.mangorage.game.world.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Packs the data of 32x32 chunks into a single file.
+ * <p>
+ * The file is split into 4 KiB sectors. Sector 0 is the header: one int per chunk holding
+ * {@code sectorOffset << 8 | sectorCount}, zero meaning the chunk was never saved. The header is
+ * memory-mapped, chunk payloads are read and written with positional {@link FileChannel} calls.
+ * Each payload starts with its length as an int.
+ */
+public final class RegionFile implements AutoCloseable {
+    public static final int SIZE = 32;
+
+    private static final int SECTOR_BYTES = 4096;
+    private static final int MAX_SECTORS_PER_CHUNK = 0xFF;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final IntBuffer locations;
+    private final BitSet usedSectors = new BitSet();
+
+    public RegionFile(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, SECTOR_BYTES); // Grows a new file to a full header
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.locations = header.asIntBuffer();
+
+        usedSectors.set(0);
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            int location = locations.get(i);
+            if (location == 0) continue;
+            int offset = location >>> 8;
+            usedSectors.set(offset, offset + (location & 0xFF));
+        }
+    }
+
+    private static int index(int localX, int localZ) {
+        return localX + localZ * SIZE;
+    }
+
+    /**
+     * @return the stored payload, or null if the chunk was never written
+     */
+    public synchronized byte[] read(int localX, int localZ) throws IOException {
+        int location = locations.get(index(localX, localZ));
+        if (location == 0) return null;
+
+        int offset = location >>> 8;
+        int sectors = location & 0xFF;
+
+        ByteBuffer buffer = ByteBuffer.allocate(sectors * SECTOR_BYTES);
+        readFully(buffer, (long) offset * SECTOR_BYTES);
+        buffer.flip();
+
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining())
+            throw new IOException("Corrupt chunk entry %s,%s in %s (length %s)".formatted(localX, localZ, path, length));
+
+        byte[] data = new byte[length];
+        buffer.get(data);
+        return data;
+    }
+
+    public synchronized void write(int localX, int localZ, byte[] data) throws IOException {
+        final int index = index(localX, localZ);
+        final int sectorsNeeded = (data.length + Integer.BYTES + SECTOR_BYTES - 1) / SECTOR_BYTES;
+        if (sectorsNeeded > MAX_SECTORS_PER_CHUNK)
+            throw new IOException("Chunk %s,%s is too large for a region file (%s bytes)".formatted(localX, localZ, data.length));
+
+        // The old sectors stay reserved until the header points at the new copy, so the only good copy of the
+        // chunk is never overwritten in place
+        final int offset = allocate(sectorsNeeded);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(sectorsNeeded * SECTOR_BYTES); // Padded, so the file stays sector aligned
+            buffer.putInt(data.length).put(data).clear();
+            long position = (long) offset * SECTOR_BYTES;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            // The mapped header can reach the disk at any time, the payload it points at has to be there first
+            channel.force(false);
+        } catch (IOException e) {
+            usedSectors.clear(offset, offset + sectorsNeeded);
+            throw e;
+        }
+
+        final int oldLocation = locations.get(index);
+        locations.put(index, offset << 8 | sectorsNeeded);
+
+        final int oldOffset = oldLocation >>> 8;
+        if (oldOffset != 0) usedSectors.clear(oldOffset, oldOffset + (oldLocation & 0xFF));
+    }
+
+    /**
+     * First fit search for a run of free sectors. Runs past the end of the file simply grow it.
+     */
+    private int allocate(int sectors) {
+        int start = usedSectors.nextClearBit(1);
+        while (true) {
+            int end = usedSectors.nextSetBit(start);
+            if (end == -1 || end - start >= sectors) break;
+            start = usedSectors.nextClearBit(end);
+        }
+        usedSectors.set(start, start + sectors);
+        return start;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of region file " + path);
+            position += read;
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        channel.force(false);
+        header.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        channel.close();
+    }
+}
@@ -0,0 +1,79 @@
+package org.mangorage.game.world.storage;
+
+import org.mangorage.game.util.collection.ConcurrentLongMap;
+import org.mangorage.game.world.chunk.ChunkPos;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongFunction;
+
+/**
+ * Routes chunk reads and writes to the {@link RegionFile} covering them, opening region files on demand.
+ */
+public final class RegionStorage implements AutoCloseable {
+    private final ConcurrentLongMap<RegionFile> regions = new ConcurrentLongMap<>();
+    private final LongFunction<RegionFile> regionOpener;
+
+    public RegionStorage(Path folder) {
+        this.regionOpener = key -> {
+            try {
+                Files.createDirectories(folder);
+                return new RegionFile(folder.resolve("r.%s.%s.region".formatted(ChunkPos.getX(key), ChunkPos.getZ(key))));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * @return the packed position of the region file holding the chunk
+     */
+    static long getRegionKey(int chunkX, int chunkZ) {
+        return ChunkPos.asLong(Math.floorDiv(chunkX, RegionFile.SIZE), Math.floorDiv(chunkZ, RegionFile.SIZE));
+    }
+
+    private RegionFile getRegion(int chunkX, int chunkZ) {
+        return regions.computeIfAbsent(getRegionKey(chunkX, chunkZ), regionOpener);
+    }
+
+    /**
+     * @return the stored chunk payload, or null if the chunk was never saved
+     */
+    public byte[] read(ChunkPos chunkPos) throws IOException {
+        return getRegion(chunkPos.x(), chunkPos.z())
+                .read(Math.floorMod(chunkPos.x(), RegionFile.SIZE), Math.floorMod(chunkPos.z(), RegionFile.SIZE));
+    }
+
+    public void write(ChunkPos chunkPos, byte[] data) throws IOException {
+        getRegion(chunkPos.x(), chunkPos.z())
+                .write(Math.floorMod(chunkPos.x(), RegionFile.SIZE), Math.floorMod(chunkPos.z(), RegionFile.SIZE), data);
+    }
+
+    public void flush() throws IOException {
+        IOException[] failure = new IOException[1];
+        regions.forEach((key, region) -> {
+            try {
+                region.flush();
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException[] failure = new IOException[1];
+        regions.removeIf((key, region) -> {
+            try {
+                region.close();
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+            return true;
+        });
+        if (failure[0] != null) throw failure[0];
+    }
+}
@@ -0,0 +1,110 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArenaAllocatorTest {
+
+    @Test
+    void takesTheSmallestGapThatFits() {
+        final ArenaAllocator allocator = new ArenaAllocator(100);
+        allocator.allocate(10);
+        final int gap8 = allocator.allocate(8);
+        allocator.allocate(10);
+        final int gap4 = allocator.allocate(4);
+        final int last = allocator.allocate(10);
+        allocator.free(gap8);
+        allocator.free(gap4);
+        assertEquals(3, allocator.getFreeBlockCount()); // 8, 4 and the rest at the end
+
+        assertEquals(gap4, allocator.allocate(3)); // Fits all three, 4 is the tightest
+        assertEquals(gap8, allocator.allocate(6)); // Too big for what's left of the 4
+        assertEquals(last + 10, allocator.allocate(20)); // Only the end is large enough
+        assertEquals(38, allocator.getLargestFreeBlock()); // What is left of the end
+    }
+
+    @Test
+    void freeMergesWithBothNeighbours() {
+        final ArenaAllocator allocator = new ArenaAllocator(30);
+        final int a = allocator.allocate(10);
+        final int b = allocator.allocate(10);
+        final int c = allocator.allocate(10);
+        assertEquals(0, allocator.getFreeBlockCount());
+
+        allocator.free(a);
+        allocator.free(c);
+        assertEquals(2, allocator.getFreeBlockCount());
+        assertEquals(0.5f, allocator.getFragmentation());
+
+        allocator.free(b); // Touches both gaps
+        assertEquals(1, allocator.getFreeBlockCount());
+        assertEquals(30, allocator.getLargestFreeBlock());
+        assertEquals(0, allocator.getFragmentation());
+        assertEquals(0, allocator.allocate(30));
+    }
+
+    @Test
+    void freeMergesWithOneNeighbour() {
+        final ArenaAllocator allocator = new ArenaAllocator(40);
+        final int a = allocator.allocate(10);
+        final int b = allocator.allocate(10);
+        allocator.allocate(10);
+
+        allocator.free(a);
+        allocator.free(b); // Joins the gap before it, not the one at the end
+        assertEquals(2, allocator.getFreeBlockCount());
+        assertEquals(20, allocator.getLargestFreeBlock());
+        assertEquals(0, allocator.allocate(20));
+    }
+
+    @Test
+    void growsWhenFull() {
+        final ArenaAllocator allocator = new ArenaAllocator(16);
+        allocator.allocate(10);
+        assertEquals(-1, allocator.allocate(8));
+
+        allocator.grow(32); // Joins the 6 left at the end
+        assertEquals(1, allocator.getFreeBlockCount());
+        assertEquals(22, allocator.getLargestFreeBlock());
+        assertEquals(10, allocator.allocate(8));
+
+        final ArenaAllocator full = new ArenaAllocator(10);
+        full.allocate(10);
+        assertEquals(-1, full.allocate(1));
+        full.grow(20);
+        assertEquals(10, full.allocate(10));
+        assertEquals(20, full.getUsed());
+    }
+
+    @Test
+    void rejectsMisuse() {
+        final ArenaAllocator allocator = new ArenaAllocator(10);
+        assertThrows(IllegalArgumentException.class, () -> allocator.allocate(0));
+        assertThrows(IllegalArgumentException.class, () -> allocator.grow(5));
+        assertThrows(IllegalStateException.class, () -> allocator.free(3));
+
+        final int offset = allocator.allocate(4);
+        allocator.free(offset);
+        assertThrows(IllegalStateException.class, () -> allocator.free(offset));
+    }
+
+    @Test
+    void vertexCountsRoundToWholeGranules() {
+        assertEquals(64, ChunkVertexArena.GRANULE);
+        assertEquals(64, ChunkVertexArena.roundUp(0));
+        assertEquals(64, ChunkVertexArena.roundUp(1));
+        assertEquals(64, ChunkVertexArena.roundUp(64));
+        assertEquals(128, ChunkVertexArena.roundUp(65));
+        assertEquals(128, ChunkVertexArena.roundUp(128));
+        assertEquals(6400, ChunkVertexArena.roundUp(6337));
+
+        // Sizes in the same granule share a gap exactly
+        final ArenaAllocator allocator = new ArenaAllocator(ChunkVertexArena.roundUp(1000) / ChunkVertexArena.GRANULE);
+        final int first = allocator.allocate(ChunkVertexArena.roundUp(130) / ChunkVertexArena.GRANULE);
+        allocator.allocate(1);
+        allocator.free(first);
+        assertEquals(first, allocator.allocate(ChunkVertexArena.roundUp(190) / ChunkVertexArena.GRANULE));
+        assertEquals(1, allocator.getFreeBlockCount());
+    }
+}
@@ -0,0 +1,45 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+import org.mangorage.game.world.chunk.Chunk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkCullingTest {
+    private static final Matrix4f PROJECTION = new Matrix4f().setPerspective(
+            (float) Math.toRadians(45), (float) OcclusionDepthBuffer.WIDTH / OcclusionDepthBuffer.HEIGHT, 0.1f, Float.POSITIVE_INFINITY
+    );
+    private static final Vector3f CAMERA = new Vector3f(0, 70, -20);
+    private static final Matrix4f VIEW = new Matrix4f().lookAt(CAMERA, new Vector3f(0, 30, -56), new Vector3f(0, 1, 0));
+
+    @Test
+    void hullOfUnevenCellsHasNoSeams() {
+        // 6 by 6 cells ahead of and below the camera, heights alternating like a checkerboard so no two neighbours merge.
+        // Every top meets the side of a taller neighbour in an edge that crosses texels
+        final int cellSpan = 8; // Plus the empty ring
+        final int[] heights = new int[cellSpan * cellSpan];
+        for (int z = 1; z < cellSpan - 1; z++) {
+            for (int x = 1; x < cellSpan - 1; x++) {
+                heights[z * cellSpan + x] = 40 + ((x + z) & 1);
+            }
+        }
+        final float originX = -cellSpan / 2f * Chunk.OCCLUDER_CELL, originZ = -40 - cellSpan * Chunk.OCCLUDER_CELL;
+
+        final OcclusionDepthBuffer buffer = new OcclusionDepthBuffer();
+        final ChunkFrustum frustum = new ChunkFrustum();
+        frustum.update(PROJECTION, VIEW);
+        buffer.begin(PROJECTION, VIEW, CAMERA);
+        ChunkCulling.drawHull(heights, new boolean[heights.length], cellSpan, originX, originZ, frustum, buffer);
+        buffer.finish();
+
+        // Small boxes buried under the whole hull, every one of them has to be hidden
+        for (float x = -10; x <= 10; x += 0.5f) {
+            for (float z = -64; z <= -48; z += 2) {
+                assertFalse(buffer.testBox(x, 0, z - 0.25f, x + 0.25f, 2, z), "box at " + x + ", " + z);
+            }
+        }
+        assertTrue(buffer.testBox(-3, 42, -60, 3, 50, -54)); // Above them
+    }
+}
@@ -0,0 +1,137 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.mangorage.game.block.Block;
+import org.mangorage.game.core.BuiltInRegistries;
+import org.mangorage.game.world.World;
+import org.mangorage.game.world.chunk.Chunk;
+import org.mangorage.game.world.chunk.ChunkPos;
+import org.mangorage.game.world.chunk.ChunkSection;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Cost of a frame of depth buffer culling on generated terrain, and how much of it gets hidden. The camera stands on
+ * the ground at a few spots and looks around in 16 directions, every frame draws the heightmap hull of the chunks in
+ * render distance the way {@link ChunkCulling#update} does and tests every non empty section in the frustum.
+ * <p>
+ * Sections are tested with their full 16x16x16 box rather than mesh bounds, there is no mesher without textures,
+ * so fewer are hidden than in game. Not a test, run the main method by hand. It creates a {@link World}, so run it
+ * from a scratch directory.
+ */
+public final class OcclusionDepthBufferBenchmark {
+    private static final int RENDER_DISTANCE = 4;
+    private static final int DIRECTIONS = 16;
+    private static final int ROUNDS = 20;
+    private static final int[][] SPOTS = {{8, 8}, {40, -24}, {-56, 72}, {120, 8}, {-24, -88}};
+
+    public static void main(String[] args) {
+        BuiltInRegistries.init();
+        final IntPredicate opaque = id -> {
+            final Block block = BuiltInRegistries.BLOCK_REGISTRY.getByInternalId(id);
+            return block != null && !block.isAir() && block.isFullCube() && block.isSolid(); // What BlockModels.isOpaque checks
+        };
+
+        World world = new World();
+        Map<Long, Chunk> chunks = new HashMap<>();
+
+        final Matrix4f projection = new Matrix4f().setPerspective((float) Math.toRadians(45), 16f / 9f, 0.1f, Float.POSITIVE_INFINITY);
+        final Matrix4f view = new Matrix4f();
+        final ChunkFrustum frustum = new ChunkFrustum();
+        final OcclusionDepthBuffer depthBuffer = new OcclusionDepthBuffer();
+
+        long drawNanos = 0, testNanos = 0;
+        long frames = 0, tested = 0, hidden = 0, occluders = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            if (round == ROUNDS / 2) { // First half is warmup
+                drawNanos = testNanos = frames = tested = hidden = occluders = 0;
+            }
+
+            for (int[] spot : SPOTS) {
+                final int cameraChunkX = Math.floorDiv(spot[0], 16), cameraChunkZ = Math.floorDiv(spot[1], 16);
+                for (int dx = -RENDER_DISTANCE; dx <= RENDER_DISTANCE; dx++) {
+                    for (int dz = -RENDER_DISTANCE; dz <= RENDER_DISTANCE; dz++) {
+                        chunks.computeIfAbsent(ChunkPos.asLong(cameraChunkX + dx, cameraChunkZ + dz),
+                                key -> world.generateChunk(ChunkPos.fromLong(key)));
+                    }
+                }
+                final Vector3f camera = new Vector3f(spot[0] + 0.5f, groundHeight(chunks, spot[0], spot[1], opaque) + 1.7f, spot[1] + 0.5f);
+
+                for (int direction = 0; direction < DIRECTIONS; direction++) {
+                    final double yaw = Math.PI * 2 * direction / DIRECTIONS;
+                    view.setLookAt(camera.x, camera.y, camera.z,
+                            camera.x + (float) Math.cos(yaw), camera.y - 0.15f, camera.z + (float) Math.sin(yaw),
+                            0, 1, 0);
+                    frustum.update(projection, view);
+
+                    final long time0 = System.nanoTime();
+                    depthBuffer.begin(projection, view, camera);
+                    drawHull(chunks, depthBuffer, frustum, cameraChunkX, cameraChunkZ, opaque);
+                    depthBuffer.finish();
+                    final long time1 = System.nanoTime();
+
+                    for (int dx = -RENDER_DISTANCE; dx <= RENDER_DISTANCE; dx++) {
+                        for (int dz = -RENDER_DISTANCE; dz <= RENDER_DISTANCE; dz++) {
+                            final Chunk chunk = chunks.get(ChunkPos.asLong(cameraChunkX + dx, cameraChunkZ + dz));
+                            final float originX = (cameraChunkX + dx) * 16f, originZ = (cameraChunkZ + dz) * 16f;
+                            for (ChunkSection section : chunk.getSections()) {
+                                if (section.isEmpty()) continue;
+                                final float minY = section.getMinY(), maxY = minY + ChunkSection.SIZE;
+                                if (!frustum.intersects(originX, minY, originZ, originX + 16, maxY, originZ + 16)) continue;
+                                tested++;
+                                if (!depthBuffer.testBox(originX, minY, originZ, originX + 16, maxY, originZ + 16)) hidden++;
+                            }
+                        }
+                    }
+                    final long time2 = System.nanoTime();
+
+                    drawNanos += time1 - time0;
+                    testNanos += time2 - time1;
+                    occluders += depthBuffer.getBoxesDrawn();
+                    frames++;
+                }
+            }
+        }
+
+        System.out.printf("Render distance %d, %d frames%n", RENDER_DISTANCE, frames);
+        System.out.printf("Draw + pyramid: %.3f ms/frame, %d occluder boxes%n", drawNanos / 1e6 / frames, occluders / frames);
+        System.out.printf("Tests:          %.3f ms/frame, %d sections%n", testNanos / 1e6 / frames, tested / frames);
+        System.out.printf("Hidden:         %d of %d in-frustum sections (%.0f%%)%n", hidden / frames, tested / frames, 100.0 * hidden / tested);
+        System.exit(0); // World keeps worker threads around
+    }
+
+    /**
+     * Gathers the heightmap the way {@link ChunkCulling#update} does and draws it with the same hull.
+     */
+    private static void drawHull(Map<Long, Chunk> chunks, OcclusionDepthBuffer depthBuffer, ChunkFrustum frustum,
+                                 int cameraChunkX, int cameraChunkZ, IntPredicate opaque) {
+        final int cells = 16 / Chunk.OCCLUDER_CELL;
+        final int span = RENDER_DISTANCE * 2 + 1;
+        final int cellSpan = span * cells + 2;
+        final int[] heights = new int[cellSpan * cellSpan];
+        for (int dx = 0; dx < span; dx++) {
+            for (int dz = 0; dz < span; dz++) {
+                final Chunk chunk = chunks.get(ChunkPos.asLong(cameraChunkX - RENDER_DISTANCE + dx, cameraChunkZ - RENDER_DISTANCE + dz));
+                final int[] chunkHeights = chunk.getOccluderHeights(opaque);
+                for (int cell = 0; cell < chunkHeights.length; cell++) {
+                    heights[(dz * cells + cell / cells + 1) * cellSpan + dx * cells + cell % cells + 1] = chunkHeights[cell];
+                }
+            }
+        }
+
+        final float originX = (cameraChunkX - RENDER_DISTANCE) * 16f - Chunk.OCCLUDER_CELL;
+        final float originZ = (cameraChunkZ - RENDER_DISTANCE) * 16f - Chunk.OCCLUDER_CELL;
+        ChunkCulling.drawHull(heights, new boolean[heights.length], cellSpan, originX, originZ, frustum, depthBuffer);
+    }
+
+    private static int groundHeight(Map<Long, Chunk> chunks, int x, int z, IntPredicate opaque) {
+        final Chunk chunk = chunks.get(ChunkPos.asLong(Math.floorDiv(x, 16), Math.floorDiv(z, 16)));
+        for (int y = chunk.getHeight() - 1; y > 0; y--) {
+            if (opaque.test(chunk.getBlockId(Math.floorMod(x, 16), y, Math.floorMod(z, 16)))) return y + 1;
+        }
+        return 0;
+    }
+}
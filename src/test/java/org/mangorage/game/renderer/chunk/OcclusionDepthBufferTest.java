@@ -0,0 +1,127 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OcclusionDepthBufferTest {
+    // Same projection as the world, the buffer's aspect ratio, camera at the origin looking down -z
+    private static final Matrix4f PROJECTION = new Matrix4f().setPerspective(
+            (float) Math.toRadians(45), (float) OcclusionDepthBuffer.WIDTH / OcclusionDepthBuffer.HEIGHT, 0.1f, Float.POSITIVE_INFINITY
+    );
+    private static final Vector3f CAMERA = new Vector3f();
+    private static final Matrix4f VIEW = new Matrix4f().lookAt(CAMERA, new Vector3f(0, 0, -1), new Vector3f(0, 1, 0));
+
+    private final OcclusionDepthBuffer buffer = new OcclusionDepthBuffer();
+
+    @BeforeEach
+    void begin() {
+        buffer.begin(PROJECTION, VIEW, CAMERA);
+    }
+
+    @Test
+    void nothingDrawnHidesNothing() {
+        buffer.finish();
+        assertTrue(buffer.testBox(-1, -1, -21, 1, 1, -20));
+        assertEquals(0, buffer.getBoxesHidden());
+    }
+
+    @Test
+    void boxBehindWallIsHidden() {
+        buffer.drawBox(-50, -50, -11, 50, 50, -10);
+        buffer.finish();
+
+        assertFalse(buffer.testBox(-1, -1, -21, 1, 1, -20));
+        assertFalse(buffer.testBox(-20, -8, -60, 20, 8, -40)); // Covers most of the screen
+        assertEquals(1, buffer.getBoxesDrawn());
+        assertEquals(2, buffer.getBoxesTested());
+        assertEquals(2, buffer.getBoxesHidden());
+    }
+
+    @Test
+    void boxInFrontOfWallIsVisible() {
+        buffer.drawBox(-50, -50, -11, 50, 50, -10);
+        buffer.finish();
+
+        assertTrue(buffer.testBox(-1, -1, -5, 1, 1, -4));
+        assertTrue(buffer.testBox(-1, -1, -10, 1, 1, -9)); // Touching the wall
+    }
+
+    @Test
+    void partlyUncoveredBoxIsVisible() {
+        buffer.drawBox(-50, -50, -11, 0, 50, -10); // Only the left half of the view
+        buffer.finish();
+
+        assertTrue(buffer.testBox(-2, -1, -21, 2, 1, -20));
+        assertFalse(buffer.testBox(-4, -1, -21, -2, 1, -20));
+    }
+
+    @Test
+    void boxBehindSilhouetteEdgeIsVisible() {
+        // The wall ends 0.7 texels into texel 64, past its centre, so sampling centres would fill it
+        buffer.drawBox(-50, -50, -11, worldX(64.7f, 10), 50, -10);
+        buffer.finish();
+
+        assertTrue(buffer.testBox(worldX(64.75f, 20), -0.1f, -21, worldX(64.95f, 20), 0.1f, -20));
+        assertFalse(buffer.testBox(worldX(62.2f, 20), -0.1f, -21, worldX(63.8f, 20), 0.1f, -20));
+    }
+
+    @Test
+    void holeShowsThroughEveryMipLevel() {
+        // A wall with a narrow slit in the middle, the large box is tested on a coarse level
+        buffer.drawBox(-50, -50, -11, -0.1f, 50, -10);
+        buffer.drawBox(0.1f, -50, -11, 50, 50, -10);
+        buffer.finish();
+
+        assertTrue(buffer.testBox(-20, -8, -60, 20, 8, -40));
+        assertFalse(buffer.testBox(-20, -8, -60, -10, 8, -40)); // The same box left of the slit
+    }
+
+    @Test
+    void occluderCrossingTheNearPlaneIsClipped() {
+        // Wall on the right running from behind the camera far ahead of it
+        buffer.drawBox(1, -50, -100, 2, 50, 100);
+        buffer.finish();
+
+        assertFalse(buffer.testBox(5, -0.5f, -20, 6, 0.5f, -19)); // Behind the wall
+        assertTrue(buffer.testBox(-6, -0.5f, -20, -5, 0.5f, -19)); // Left of the camera, nothing there
+        assertTrue(buffer.testBox(-0.5f, -0.5f, -20, 0.5f, 0.5f, -19)); // Straight ahead
+    }
+
+    @Test
+    void boxReachingPastTheNearPlaneIsVisible() {
+        buffer.drawBox(-50, -50, -11, 50, 50, -10);
+        buffer.finish();
+
+        assertTrue(buffer.testBox(-1, -1, -30, 1, 1, 0.05f)); // The camera might be inside it
+    }
+
+    @Test
+    void testLevelKeepsBoxesUnderFourTexels() {
+        assertEquals(0, buffer.getTestLevel(0, 0, 0, 0));
+        assertEquals(0, buffer.getTestLevel(10, 10, 13, 13));
+        assertEquals(1, buffer.getTestLevel(10, 10, 14, 10));
+        assertEquals(1, buffer.getTestLevel(10, 10, 10, 14));
+        assertEquals(1, buffer.getTestLevel(3, 0, 8, 0)); // 5 texels, but only 3 once halved
+        assertEquals(2, buffer.getTestLevel(1, 0, 8, 0)); // 8 texels, still 4 once halved
+        assertEquals(5, buffer.getTestLevel(0, 0, OcclusionDepthBuffer.WIDTH - 1, OcclusionDepthBuffer.HEIGHT - 1));
+
+        for (int x0 = 0; x0 < 40; x0++) {
+            for (int x1 = x0; x1 < 80; x1++) {
+                final int level = buffer.getTestLevel(x0, 0, x1, 0);
+                assertTrue((x1 >> level) - (x0 >> level) < 4, "span at level " + level);
+                if (level > 0) assertTrue((x1 >> (level - 1)) - (x0 >> (level - 1)) >= 4, "level " + level + " is coarser than needed");
+            }
+        }
+    }
+
+    /**
+     * @return the world x that lands on {@code screenX} at {@code distance} in front of the camera
+     */
+    private static float worldX(float screenX, float distance) {
+        return (screenX / OcclusionDepthBuffer.WIDTH * 2 - 1) * distance / PROJECTION.m00();
+    }
+}
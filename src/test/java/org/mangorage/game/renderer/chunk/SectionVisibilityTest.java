@@ -0,0 +1,120 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.junit.jupiter.api.Test;
+import org.mangorage.game.core.Direction;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mangorage.game.core.Direction.*;
+
+class SectionVisibilityTest {
+    private static final int AIR = 1, STONE = 2;
+    private static final int SIZE = 16;
+
+    private final SectionVisibility visibility = new SectionVisibility(id -> id == STONE);
+
+    @Test
+    void emptyConnectsEverything() {
+        assertEquals(SectionVisibility.ALL, compute(filled(AIR)));
+    }
+
+    @Test
+    void fullConnectsNothing() {
+        assertEquals(SectionVisibility.NONE, compute(filled(STONE)));
+    }
+
+    @Test
+    void closedPocketConnectsNothing() {
+        final int[] cells = filled(STONE);
+        for (int y = 4; y < 12; y++) {
+            for (int z = 4; z < 12; z++) {
+                for (int x = 4; x < 12; x++) {
+                    cells[index(x, y, z)] = AIR;
+                }
+            }
+        }
+        assertEquals(SectionVisibility.NONE, compute(cells));
+    }
+
+    @Test
+    void wallSplitsEastFromWest() {
+        final int[] cells = filled(AIR);
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                cells[index(8, y, z)] = STONE;
+            }
+        }
+        final long result = compute(cells);
+
+        assertFalse(SectionVisibility.isConnected(result, WEST, EAST));
+        assertFalse(SectionVisibility.isConnected(result, EAST, WEST));
+        // Both halves still touch the four faces the wall runs along
+        for (Direction side : new Direction[]{WEST, EAST}) {
+            for (Direction other : new Direction[]{UP, DOWN, NORTH, SOUTH}) {
+                assertTrue(SectionVisibility.isConnected(result, side, other), side + " to " + other);
+                assertTrue(SectionVisibility.isConnected(result, other, side), other + " to " + side);
+            }
+        }
+        assertTrue(SectionVisibility.isConnected(result, UP, DOWN));
+        assertTrue(SectionVisibility.isConnected(result, NORTH, SOUTH));
+    }
+
+    @Test
+    void floorSplitsUpFromDown() {
+        final int[] cells = filled(AIR);
+        for (int z = 0; z < SIZE; z++) {
+            for (int x = 0; x < SIZE; x++) {
+                cells[index(x, 3, z)] = STONE;
+            }
+        }
+        final long result = compute(cells);
+
+        assertFalse(SectionVisibility.isConnected(result, UP, DOWN));
+        assertTrue(SectionVisibility.isConnected(result, UP, NORTH));
+        assertTrue(SectionVisibility.isConnected(result, DOWN, EAST));
+        assertTrue(SectionVisibility.isConnected(result, WEST, EAST));
+    }
+
+    @Test
+    void holeInTheWallConnectsBothSides() {
+        final int[] cells = filled(AIR);
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                if (y != 5 || z != 9) cells[index(8, y, z)] = STONE;
+            }
+        }
+        assertEquals(SectionVisibility.ALL, compute(cells));
+    }
+
+    @Test
+    void tunnelOnlyConnectsItsEnds() {
+        final int[] cells = filled(STONE);
+        for (int x = 0; x < SIZE; x++) {
+            cells[index(x, 8, 8)] = AIR;
+        }
+        final long result = compute(cells);
+
+        assertTrue(SectionVisibility.isConnected(result, WEST, EAST));
+        assertTrue(SectionVisibility.isConnected(result, EAST, WEST));
+        assertTrue(SectionVisibility.isConnected(result, WEST, WEST));
+        for (Direction other : new Direction[]{UP, DOWN, NORTH, SOUTH}) {
+            assertFalse(SectionVisibility.isConnected(result, WEST, other), "WEST to " + other);
+            assertFalse(SectionVisibility.isConnected(result, other, other), other + " to itself");
+        }
+    }
+
+    private long compute(int[] cells) {
+        return visibility.compute(cells, SIZE, SIZE, SIZE);
+    }
+
+    private static int[] filled(int id) {
+        final int[] cells = new int[SIZE * SIZE * SIZE];
+        Arrays.fill(cells, id);
+        return cells;
+    }
+
+    private static int index(int x, int y, int z) {
+        return (y * SIZE + z) * SIZE + x; // x fastest, then z, then y
+    }
+}
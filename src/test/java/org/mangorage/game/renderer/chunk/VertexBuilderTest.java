@@ -0,0 +1,64 @@
+package org.mangorage.game.renderer.chunk;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VertexBuilderTest {
+
+    @Test
+    void packsEveryFieldIntoEightBytes() {
+        assertEquals(8, VertexBuilder.BYTES_PER_VERTEX);
+        try (VertexBuilder builder = new VertexBuilder(1)) {
+            builder.vertex(16, 15.9375f, 0.0625f, 17.25f, 63.75f, VertexBuilder.packColor(VertexBuilder.MAX_SHADES - 1, 11), VertexBuilder.MAX_LAYERS - 1);
+            builder.vertex(0, 0, 0, 0, 0, VertexBuilder.packColor(0, 0), 0);
+
+            final ByteBuffer buffer = builder.getBuffer();
+            assertEquals(2 * VertexBuilder.BYTES_PER_VERTEX, buffer.remaining());
+            assertVertex(buffer, 0, 16, 15.9375f, 0.0625f, 17.25f, 63.75f, VertexBuilder.MAX_SHADES - 1, 11, VertexBuilder.MAX_LAYERS - 1);
+            assertVertex(buffer, 1, 0, 0, 0, 0, 0, 0, 0, 0);
+        }
+    }
+
+    @Test
+    void everyFieldKeepsItsBits() {
+        try (VertexBuilder builder = new VertexBuilder()) {
+            for (int shade = 0; shade < VertexBuilder.MAX_SHADES; shade++) {
+                for (int tint = 0; tint < VertexBuilder.MAX_TINTS; tint++) {
+                    builder.vertex(shade * 2, tint, 31.9375f, shade, tint, VertexBuilder.packColor(shade, tint), shade * tint);
+                }
+            }
+
+            final ByteBuffer buffer = builder.getBuffer();
+            int vertex = 0;
+            for (int shade = 0; shade < VertexBuilder.MAX_SHADES; shade++) {
+                for (int tint = 0; tint < VertexBuilder.MAX_TINTS; tint++) {
+                    assertVertex(buffer, vertex++, shade * 2, tint, 31.9375f, shade, tint, shade, tint, shade * tint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unpacks a vertex the way the chunk shader does.
+     */
+    private static void assertVertex(ByteBuffer buffer, int vertex, float x, float y, float z, float u, float v, int shade, int tint, int layer) {
+        final int offset = vertex * VertexBuilder.BYTES_PER_VERTEX;
+        final int packedX = Short.toUnsignedInt(buffer.getShort(offset));
+        final int packedY = Short.toUnsignedInt(buffer.getShort(offset + 2));
+        final int packedZ = Short.toUnsignedInt(buffer.getShort(offset + 4));
+        final int packedUV = Short.toUnsignedInt(buffer.getShort(offset + 6));
+        final int mask = (1 << VertexBuilder.POSITION_BITS) - 1;
+
+        assertEquals(x, (float) (packedX & mask) / VertexBuilder.POSITION_SCALE);
+        assertEquals(y, (float) (packedY & mask) / VertexBuilder.POSITION_SCALE);
+        assertEquals(z, (float) (packedZ & mask) / VertexBuilder.POSITION_SCALE);
+        assertEquals(u, (float) (packedUV & 0xFF) / VertexBuilder.UV_SCALE);
+        assertEquals(v, (float) (packedUV >> 8) / VertexBuilder.UV_SCALE);
+        assertEquals(shade, packedX >> VertexBuilder.POSITION_BITS);
+        assertEquals(tint, packedY >> VertexBuilder.POSITION_BITS);
+        assertEquals(layer, packedZ >> VertexBuilder.POSITION_BITS);
+    }
+}
@@ -0,0 +1,56 @@
+package org.mangorage.game.util.collection;
+
+import org.mangorage.game.world.chunk.ChunkPos;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loaded chunk lookups the way the render loop does them, a 9x9 area around the camera, against the
+ * {@link ConcurrentHashMap} keyed by {@link ChunkPos} it replaced. Prints throughput and bytes allocated per lookup.
+ * <p>
+ * Not a test, run the main method by hand. Pass {@code -XX:-DoEscapeAnalysis} to see the ChunkPos allocations
+ * that C2 otherwise hides.
+ */
+public final class ConcurrentLongMapBenchmark {
+    private static final int LOOKUPS = 50_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+
+        ConcurrentHashMap<ChunkPos, Object> hashMap = new ConcurrentHashMap<>();
+        ConcurrentLongMap<Object> longMap = new ConcurrentLongMap<>();
+        for (int x = -4; x <= 4; x++) {
+            for (int z = -4; z <= 4; z++) {
+                Object chunk = new Object();
+                hashMap.put(new ChunkPos(x, z), chunk);
+                longMap.put(ChunkPos.asLong(x, z), chunk);
+            }
+        }
+
+        long sink = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long allocated0 = threads.getThreadAllocatedBytes(thread);
+            final long time0 = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                sink += hashMap.get(new ChunkPos(i % 9 - 4, i / 9 % 9 - 4)).hashCode() & 1;
+            }
+            final long time1 = System.nanoTime();
+            final long allocated1 = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < LOOKUPS; i++) {
+                sink += longMap.get(ChunkPos.asLong(i % 9 - 4, i / 9 % 9 - 4)).hashCode() & 1;
+            }
+            final long time2 = System.nanoTime();
+            final long allocated2 = threads.getThreadAllocatedBytes(thread);
+
+            System.out.printf("Round %d: ConcurrentHashMap<ChunkPos> %.1f Mops/s, %d B/op | ConcurrentLongMap %.1f Mops/s, %d B/op%n",
+                    round,
+                    LOOKUPS / ((time1 - time0) / 1e3), (allocated1 - allocated0) / LOOKUPS,
+                    LOOKUPS / ((time2 - time1) / 1e3), (allocated2 - allocated1) / LOOKUPS
+            );
+        }
+        System.out.println("Checksum " + sink); // Keeps the lookups alive
+    }
+}
@@ -0,0 +1,162 @@
+package org.mangorage.game.util.collection;
+
+import org.junit.jupiter.api.Test;
+import org.mangorage.game.world.chunk.ChunkPos;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLongMapTest {
+    @Test
+    void emptySlotsDontMatchKeyZero() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        assertNull(map.get(0)); // Empty slots hold key 0
+        assertFalse(map.containsKey(0));
+
+        map.put(0, "zero");
+        assertEquals("zero", map.get(0));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void removedKeyReusesItsTombstone() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        map.put(42, "a");
+        assertEquals("a", map.remove(42));
+        assertNull(map.get(42));
+        assertNull(map.remove(42));
+        assertEquals(0, map.size());
+        assertEquals(1, map.getUsedSlots());
+
+        assertNull(map.put(42, "b"));
+        assertEquals("b", map.get(42));
+        assertEquals(1, map.size());
+        assertEquals(1, map.getUsedSlots());
+    }
+
+    @Test
+    void tombstonesAreClearedWithoutGrowing() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>();
+        final int capacity = map.getCapacity();
+
+        // Chunks streaming past the camera, a few live at any time but every key new
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key, key);
+            if (key >= 8) assertEquals(key - 8, map.remove(key - 8));
+            assertTrue(map.getUsedSlots() <= capacity * 0.5f);
+        }
+        assertEquals(capacity, map.getCapacity());
+        assertEquals(8, map.size());
+        for (long key = 10_000 - 8; key < 10_000; key++) {
+            assertEquals(key, map.get(key));
+        }
+    }
+
+    @Test
+    void growsPastHalfFull() {
+        ConcurrentLongMap<Integer> map = new ConcurrentLongMap<>(64);
+        assertEquals(64, map.getCapacity());
+        for (int i = 0; i < 32; i++) {
+            map.put(i * 31L, i);
+        }
+        assertEquals(64, map.getCapacity());
+
+        map.put(32 * 31L, 32);
+        assertEquals(128, map.getCapacity());
+        for (int i = 0; i < 1000; i++) {
+            map.put(i * 31L, i);
+            assertTrue(map.size() <= map.getCapacity() * 0.5f);
+        }
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(i * 31L));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    void removeExpectedComparesByIdentity() {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        final String value = new String("chunk");
+        map.put(7, value);
+
+        assertFalse(map.remove(7, new String("chunk")));
+        assertFalse(map.remove(8, value));
+        assertSame(value, map.get(7));
+
+        assertTrue(map.remove(7, value));
+        assertNull(map.get(7));
+        assertFalse(map.remove(7, value));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void removeIfSeesEveryEntryOnce() {
+        ConcurrentLongMap<Integer> map = new ConcurrentLongMap<>();
+        for (int x = -5; x <= 5; x++) {
+            for (int z = -5; z <= 5; z++) {
+                map.put(ChunkPos.asLong(x, z), x);
+            }
+        }
+
+        Set<Long> seen = new HashSet<>();
+        map.removeIf((key, x) -> {
+            assertTrue(seen.add(key));
+            assertEquals(ChunkPos.getX(key), x);
+            return (x & 1) == 0;
+        });
+        assertEquals(121, seen.size());
+        assertEquals(11 * 6, map.size());
+
+        for (int x = -5; x <= 5; x++) {
+            for (int z = -5; z <= 5; z++) {
+                final Integer value = map.get(ChunkPos.asLong(x, z));
+                if ((x & 1) == 0) assertNull(value);
+                else assertEquals(x, value);
+            }
+        }
+    }
+
+    @Test
+    void collidingNegativeKeys() {
+        ConcurrentLongMap<Long> map = new ConcurrentLongMap<>(16);
+        final int capacity = map.getCapacity();
+        final int mask = capacity - 1;
+
+        // Negative coordinates that all land in the same home slot
+        final int home = hashOf(ChunkPos.asLong(-1, -1)) & mask;
+        Map<Long, Long> expected = new HashMap<>();
+        for (int x = -1; x > -100_000 && expected.size() < 6; x--) {
+            final long key = ChunkPos.asLong(x, -x);
+            if ((hashOf(key) & mask) == home) expected.put(key, key);
+        }
+        expected.put(Long.MIN_VALUE, 1L);
+        expected.put(-1L, 2L);
+        assertEquals(8, expected.size());
+
+        expected.forEach(map::put);
+        assertEquals(capacity, map.getCapacity()); // Still one table, so the keys really share a probe chain
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+
+        // Removing from the middle of the probe chain keeps the rest reachable
+        final long middle = expected.keySet().stream().filter(key -> key != Long.MIN_VALUE && key != -1L).skip(2).findFirst().orElseThrow();
+        assertEquals(middle, map.remove(middle));
+        expected.remove(middle);
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        assertNull(map.get(middle));
+    }
+
+    /**
+     * Same mixer as the map, so the test can build real collisions.
+     */
+    private static int hashOf(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,111 @@
+package org.mangorage.game.world.chunk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PalettedContainerTest {
+    private static final int SIZE_X = 16, SIZE_Y = 255, SIZE_Z = 16; // A whole column, the volume isn't a multiple of any packing
+
+    @Test
+    void startsWithoutData() {
+        PalettedContainer container = new PalettedContainer(SIZE_X, SIZE_Y, SIZE_Z, 7);
+        assertEquals(0, container.getBits());
+        assertEquals(7, container.get(0, 0, 0));
+        assertEquals(7, container.get(SIZE_X - 1, SIZE_Y - 1, SIZE_Z - 1));
+
+        final long empty = container.getMemoryUsage();
+        assertEquals(7, container.set(3, 4, 5, 7)); // Writing the default id allocates nothing
+        assertEquals(0, container.getBits());
+        assertEquals(empty, container.getMemoryUsage());
+    }
+
+    @Test
+    void firstOtherIdAllocatesData() {
+        PalettedContainer container = new PalettedContainer(SIZE_X, SIZE_Y, SIZE_Z, 1);
+        final long empty = container.getMemoryUsage();
+
+        assertEquals(1, container.set(15, 254, 15, 2));
+        assertEquals(1, container.getBits());
+        assertTrue(container.getMemoryUsage() > empty);
+        assertEquals(2, container.get(15, 254, 15));
+        assertEquals(1, container.get(0, 0, 0));
+        assertEquals(1, container.get(14, 254, 15));
+    }
+
+    @Test
+    void roundTripsAcrossEveryResize() {
+        PalettedContainer container = new PalettedContainer(SIZE_X, SIZE_Y, SIZE_Z, 0);
+        int[] expected = new int[SIZE_X * SIZE_Y * SIZE_Z];
+        Random random = new Random(1);
+
+        // 600 distinct ids takes the packing from 0 up to 10 bits, through widths that do and don't divide 64
+        int lastBits = 0;
+        for (int id = 1; id <= 600; id++) {
+            for (int i = 0; i < 40; i++) {
+                final int cell = random.nextInt(expected.length);
+                final int x = cell % SIZE_X, z = cell / SIZE_X % SIZE_Z, y = cell / (SIZE_X * SIZE_Z);
+                assertEquals(expected[cell], container.set(x, y, z, id));
+                expected[cell] = id;
+            }
+
+            final int bits = container.getBits();
+            assertEquals(32 - Integer.numberOfLeadingZeros(id), bits, "bits after " + (id + 1) + " ids");
+            if (bits != lastBits) {
+                assertContents(expected, container);
+                lastBits = bits;
+            }
+        }
+        assertEquals(10, lastBits);
+        assertContents(expected, container);
+    }
+
+    @Test
+    void overwritesKeepNeighbours() {
+        PalettedContainer container = new PalettedContainer(5, 3, 7, 0); // Odd sizes, a partial last word
+        int[] expected = new int[5 * 3 * 7];
+        for (int cell = 0; cell < expected.length; cell++) {
+            expected[cell] = cell % 3;
+            container.set(cell % 5, cell / 35, cell / 5 % 7, expected[cell]);
+        }
+        assertContents(expected, container, 5, 3, 7);
+
+        for (int cell = 0; cell < expected.length; cell += 2) {
+            expected[cell] = 2 - expected[cell];
+            container.set(cell % 5, cell / 35, cell / 5 % 7, expected[cell]);
+        }
+        assertContents(expected, container, 5, 3, 7);
+    }
+
+    @Test
+    void copyIsIndependent() {
+        PalettedContainer container = new PalettedContainer(SIZE_X, SIZE_Y, SIZE_Z, 0);
+        container.set(1, 2, 3, 4);
+        PalettedContainer copy = container.copy();
+
+        copy.set(1, 2, 3, 5);
+        copy.set(0, 0, 0, 6);
+        assertEquals(4, container.get(1, 2, 3));
+        assertEquals(0, container.get(0, 0, 0));
+        assertEquals(5, copy.get(1, 2, 3));
+        assertEquals(6, copy.get(0, 0, 0));
+    }
+
+    private static void assertContents(int[] expected, PalettedContainer container) {
+        assertContents(expected, container, SIZE_X, SIZE_Y, SIZE_Z);
+    }
+
+    private static void assertContents(int[] expected, PalettedContainer container, int sizeX, int sizeY, int sizeZ) {
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < sizeZ; z++) {
+                for (int x = 0; x < sizeX; x++) {
+                    final int cell = (y * sizeZ + z) * sizeX + x;
+                    if (expected[cell] != container.get(x, y, z))
+                        fail("Cell " + x + ", " + y + ", " + z + ": expected " + expected[cell] + " but got " + container.get(x, y, z));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.mangorage.game.world.storage;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mangorage.game.core.BuiltInRegistries;
+import org.mangorage.game.world.chunk.Chunk;
+import org.mangorage.game.world.chunk.ChunkPos;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkSaveQueueTest {
+    @TempDir
+    Path folder;
+
+    @BeforeAll
+    static void registries() {
+        BuiltInRegistries.init();
+    }
+
+    @Test
+    void flushWritesEverythingAcrossRegions() throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        try (RegionStorage storage = new RegionStorage(folder)) {
+            ChunkSaveQueue queue = new ChunkSaveQueue(storage);
+            for (int x = -40; x < 40; x += 3) {
+                for (int z = -40; z < 40; z += 5) {
+                    Chunk chunk = ChunkSerializerTest.terrain(x * 31L + z);
+                    chunk = ChunkSerializer.deserialize(null, new ChunkPos(x, z), ChunkSerializer.serialize(chunk));
+                    chunks.add(chunk);
+                    queue.enqueue(chunk);
+                }
+            }
+            queue.flush();
+            assertEquals(0, queue.getPendingCount());
+
+            for (Chunk chunk : chunks) {
+                final byte[] stored = storage.read(chunk.getChunkPos());
+                assertNotNull(stored, "chunk at " + chunk.getChunkPos());
+                assertArrayEquals(ChunkSerializer.serialize(chunk), stored);
+            }
+        }
+    }
+
+    @Test
+    void flushWritesTheNewestData() throws IOException {
+        final ChunkPos pos = new ChunkPos(5, 6);
+        try (RegionStorage storage = new RegionStorage(folder)) {
+            ChunkSaveQueue queue = new ChunkSaveQueue(storage);
+            Chunk last = null;
+            for (int i = 0; i < 20; i++) {
+                last = ChunkSerializer.deserialize(null, pos, ChunkSerializer.serialize(ChunkSerializerTest.terrain(i)));
+                queue.enqueue(last);
+            }
+            queue.flush();
+            assertArrayEquals(ChunkSerializer.serialize(last), storage.read(pos));
+        }
+    }
+}
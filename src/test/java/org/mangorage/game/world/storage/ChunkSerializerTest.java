@@ -0,0 +1,232 @@
+package org.mangorage.game.world.storage;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mangorage.game.block.Block;
+import org.mangorage.game.core.BuiltInRegistries;
+import org.mangorage.game.world.BlockAction;
+import org.mangorage.game.world.chunk.Chunk;
+import org.mangorage.game.world.chunk.ChunkPos;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkSerializerTest {
+    private static final ChunkPos POS = new ChunkPos(3, -7);
+    private static final int MAGIC = 0x4D43484B;
+    private static final int VOLUME = 16 * 255 * 16;
+
+    @BeforeAll
+    static void registries() {
+        BuiltInRegistries.init();
+    }
+
+    @Test
+    void roundTripsTerrain() throws IOException {
+        final Chunk chunk = terrain(1);
+        for (int level : new int[]{Deflater.DEFAULT_COMPRESSION, Deflater.NO_COMPRESSION, 1, 6, Deflater.BEST_COMPRESSION}) {
+            assertSameBlocks(chunk, ChunkSerializer.deserialize(null, POS, ChunkSerializer.serialize(chunk, level)));
+        }
+    }
+
+    @Test
+    void roundTripsEdgeCases() throws IOException {
+        final Chunk empty = new Chunk(255, null, POS);
+        assertSameBlocks(empty, ChunkSerializer.deserialize(null, POS, ChunkSerializer.serialize(empty)));
+
+        // Alternating ids, every run is a single cell
+        final Chunk checkerboard = new Chunk(255, null, POS);
+        final int stone = id(BuiltInRegistries.STONE_BLOCK), dirt = id(BuiltInRegistries.DIRT_BLOCK);
+        for (int y = 0; y < 255; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    checkerboard.setBlockId(x, y, z, ((x + y + z) & 1) == 0 ? stone : dirt, BlockAction.NONE);
+                }
+            }
+        }
+        assertSameBlocks(checkerboard, ChunkSerializer.deserialize(null, POS, ChunkSerializer.serialize(checkerboard)));
+
+        // Last cell of the chunk differs from everything before it
+        final Chunk corner = new Chunk(255, null, POS);
+        corner.setBlockId(15, 254, 15, stone, BlockAction.NONE);
+        assertSameBlocks(corner, ChunkSerializer.deserialize(null, POS, ChunkSerializer.serialize(corner)));
+    }
+
+    @Test
+    void readsLegacyData() throws IOException {
+        final Chunk chunk = terrain(2);
+        final int[] ids = new int[VOLUME];
+        int i = 0;
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 255; y++) {
+                for (int z = 0; z < 16; z++) {
+                    ids[i++] = chunk.getBlockId(x, y, z); // The old format wrote x, then y, then z
+                }
+            }
+        }
+
+        final byte[] data = legacy(16, 255, 16, ids);
+        assertNotEquals(MAGIC, ByteBuffer.wrap(data).getInt());
+        assertSameBlocks(chunk, ChunkSerializer.deserialize(null, POS, data));
+    }
+
+    @Test
+    void rejectsBodyLengthOutOfRange() {
+        assertCorrupt(header(Integer.MAX_VALUE));
+        assertCorrupt(header(-1));
+        assertCorrupt(header(0));
+    }
+
+    @Test
+    void rejectsTruncatedBody() {
+        final byte[] data = payload(16, 255, 16, 1, air(), 1, VOLUME, 0);
+        assertCorrupt(Arrays.copyOf(data, data.length / 2));
+
+        // Claims more than the deflated stream holds
+        final byte[] longer = data.clone();
+        ByteBuffer.wrap(longer).putInt(5, readBodyLength(data) + 64);
+        assertCorrupt(longer);
+    }
+
+    @Test
+    void rejectsBadSizes() {
+        assertCorrupt(payload(17, 255, 16, 1, air(), 1, 17 * 255 * 16, 0));
+        assertCorrupt(payload(16, 0, 16, 1, air(), 1, 1, 0));
+        assertCorrupt(payload(16, 1 << 20, 16, 1, air(), 1, VOLUME, 0));
+    }
+
+    @Test
+    void rejectsBadPalette() {
+        assertCorrupt(payload(16, 255, 16, 0, 1, VOLUME, 0));
+        assertCorrupt(payload(16, 255, 16, 1_000_000, air(), 1, VOLUME, 0));
+        assertCorrupt(payload(16, 255, 16, 1, 9999, 1, VOLUME, 0)); // Unknown block id
+    }
+
+    @Test
+    void rejectsPaletteIndexOutOfRange() {
+        assertCorrupt(payload(16, 255, 16, 1, air(), 1, VOLUME, 1));
+        assertCorrupt(payload(16, 255, 16, 1, air(), 1, VOLUME, -1));
+    }
+
+    @Test
+    void rejectsRunsNotCoveringTheChunk() {
+        assertCorrupt(payload(16, 255, 16, 1, air(), 1, VOLUME - 1, 0));
+        assertCorrupt(payload(16, 255, 16, 1, air(), 1, VOLUME + 1, 0));
+        assertCorrupt(payload(16, 255, 16, 1, air(), 2, VOLUME, 0, Integer.MAX_VALUE, 0)); // Would overflow the cell count
+        assertCorrupt(payload(16, 255, 16, 1, air(), 2, VOLUME, 0, 0, 0));
+        assertCorrupt(payload(16, 255, 16, 1, air(), 1_000_000, VOLUME, 0));
+    }
+
+    @Test
+    void acceptsMinimalPayload() throws IOException {
+        assertNotNull(ChunkSerializer.deserialize(null, POS, payload(16, 255, 16, 1, air(), 1, VOLUME, 0)));
+    }
+
+    @Test
+    void rejectsCorruptLegacyData() throws IOException {
+        assertCorrupt(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        assertCorrupt(legacy(32, 255, 16));
+        assertCorrupt(legacy(16, 255, 16)); // Header only, the ids are missing
+    }
+
+    /**
+     * Layered ground with a bumpy surface and scattered edits, like generated terrain a player has dug into.
+     */
+    static Chunk terrain(long seed) {
+        final Random random = new Random(seed);
+        final int stone = id(BuiltInRegistries.STONE_BLOCK), dirt = id(BuiltInRegistries.DIRT_BLOCK);
+        final int grass = id(BuiltInRegistries.GRASS_BLOCK), diamond = id(BuiltInRegistries.DIAMOND_BLOCK);
+
+        Chunk chunk = new Chunk(255, null, POS);
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                final int height = 60 + (int) (8 * Math.sin(x * 0.4) * Math.cos(z * 0.3)) + random.nextInt(3);
+                for (int y = 0; y <= height; y++) {
+                    final int id = y == height ? grass : y > height - 4 ? dirt : random.nextInt(200) == 0 ? diamond : stone;
+                    chunk.setBlockId(x, y, z, id, BlockAction.NONE);
+                }
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            chunk.setBlockId(random.nextInt(16), random.nextInt(255), random.nextInt(16), 1 + random.nextInt(7), BlockAction.NONE);
+        }
+        return chunk;
+    }
+
+    private static int id(Block block) {
+        return BuiltInRegistries.BLOCK_REGISTRY.getInternalId(block);
+    }
+
+    private static void assertSameBlocks(Chunk expected, Chunk actual) {
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    if (expected.getBlockId(x, y, z) != actual.getBlockId(x, y, z))
+                        fail("Block " + x + ", " + y + ", " + z + ": expected " + expected.getBlockId(x, y, z) + " but got " + actual.getBlockId(x, y, z));
+                }
+            }
+        }
+    }
+
+    private static void assertCorrupt(byte[] data) {
+        assertThrows(IOException.class, () -> ChunkSerializer.deserialize(null, POS, data));
+    }
+
+    private static int air() {
+        return BuiltInRegistries.BLOCK_REGISTRY.getDefaultInternalId();
+    }
+
+    private static byte[] header(int bodyLength) {
+        return ByteBuffer.allocate(9 + 16).putInt(MAGIC).put((byte) 1).putInt(bodyLength).array();
+    }
+
+    private static int readBodyLength(byte[] data) {
+        return ByteBuffer.wrap(data).getInt(5);
+    }
+
+    /**
+     * A current format payload with the given body ints, whatever they claim.
+     */
+    static byte[] payload(int... body) {
+        ByteBuffer ints = ByteBuffer.allocate(body.length * Integer.BYTES);
+        ints.asIntBuffer().put(body);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            data.writeInt(MAGIC);
+            data.writeByte(1);
+            data.writeInt(body.length * Integer.BYTES);
+            try (DeflaterOutputStream deflated = new DeflaterOutputStream(data)) {
+                deflated.write(ints.array());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * The old format: a deflated stream of the sizes and then every id as an int.
+     */
+    static byte[] legacy(int sizeX, int sizeY, int sizeZ, int... ids) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(new DeflaterOutputStream(out))) {
+            data.writeInt(sizeX);
+            data.writeInt(sizeY);
+            data.writeInt(sizeZ);
+            for (int id : ids) {
+                data.writeInt(id);
+            }
+        }
+        return out.toByteArray();
+    }
+}
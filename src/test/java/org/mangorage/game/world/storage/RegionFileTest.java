@@ -0,0 +1,58 @@
+package org.mangorage.game.world.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegionFileTest {
+    private static final int SECTOR_BYTES = 4096;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void rewriteNeverOverwritesTheOldCopy() throws IOException {
+        final Path path = folder.resolve("r.0.0.bin");
+        final byte[] first = filled(100, (byte) 1), second = filled(100, (byte) 2), third = filled(100, (byte) 3);
+
+        try (RegionFile region = new RegionFile(path)) {
+            region.write(3, 4, first);
+            assertEquals(2 * SECTOR_BYTES, Files.size(path)); // Header, then the chunk in sector 1
+
+            // Sector 1 is still the live copy while the new one is written, so it goes after it
+            region.write(3, 4, second);
+            assertEquals(3 * SECTOR_BYTES, Files.size(path));
+            assertArrayEquals(second, region.read(3, 4));
+            assertArrayEquals(first, readSector(path, 1, first.length));
+
+            // Once the header moved on, sector 1 is free again
+            region.write(3, 4, third);
+            assertEquals(3 * SECTOR_BYTES, Files.size(path));
+            assertArrayEquals(third, region.read(3, 4));
+            assertArrayEquals(second, readSector(path, 2, second.length));
+        }
+
+        try (RegionFile region = new RegionFile(path)) {
+            assertArrayEquals(third, region.read(3, 4));
+            assertNull(region.read(0, 0));
+        }
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, value);
+        return data;
+    }
+
+    private static byte[] readSector(Path path, int sector, int length) throws IOException {
+        final byte[] file = Files.readAllBytes(path);
+        final int start = sector * SECTOR_BYTES + Integer.BYTES; // Skip the length prefix
+        return Arrays.copyOfRange(file, start, start + length);
+    }
+}